@@ -1,6 +1,5 @@
 import * as core from '@actions/core'
 import * as exec from '@actions/exec'
-import { ExecOutput } from '@actions/exec'
 import * as cache from '@actions/cache'
 import * as path from 'path'
 import * as semver from 'semver'
@@ -17,16 +16,37 @@ import WebSocket, {OPEN} from 'ws'
 import nodeEval from "eval";
 
 let workspace: string;
-let currentCommand: Promise<ExecOutput> | null = null;
-
+let userHome: string;
+let initialEnv: NodeJS.ProcessEnv;
+let initialProcesses: Set<number>;
+let initialHomeEntries: Set<string>;
+// The ids of the requests whose commands are running
+const runningCommands: Set<number> = new Set<number>()
 const backgroundCommands: Map<string, Promise<number>> = new Map<string, Promise<number>>()
 
+// Files are transferred as binary frames: an 8 byte transfer id (the id of the request that started the transfer),
+// a flags byte, and up to CHUNK_SIZE bytes of content
+const CHUNK_SIZE = 64 * 1024
+const HEADER_SIZE = 9
+const FLAG_LAST = 1
+
+interface Upload {
+  stream: streamfs.WriteStream
+  done: Promise<void>
+}
+
+const uploads: Map<number, Upload> = new Map<number, Upload>()
+
 export async function run() {
   const githubWorkspacePath = process.env['GITHUB_WORKSPACE']
   if (!githubWorkspacePath) {
     throw new Error('GITHUB_WORKSPACE not defined')
   }
   workspace = path.resolve(githubWorkspacePath)
+  initialEnv = {...process.env}
+  userHome = await determineUserHome()
+  initialProcesses = await listProcesses()
+  initialHomeEntries = new Set(await fs.readdir(userHome))
 
   let endpoint = core.getInput("endpoint")
   if (!endpoint) {
@@ -38,20 +58,50 @@ export async function run() {
   await setupWs(endpoint, onMessage)
 }
 
-export async function onMessage(ws: WebSocket, msg: any) {
+export async function onMessage(ws: WebSocket, msg: any, isBinary: boolean = false) {
+  if (isBinary) {
+    onChunk(msg as Buffer)
+    return
+  }
+
   const json = JSON.parse(msg)
 
+  // Requests carrying a request id expect a response tagged with the same id, the others are fire-and-forget
+  const requestId: number | undefined = json.requestId
+  const reply = (response: object) => {
+    if (requestId !== undefined) {
+      ws.send(JSON.stringify({...response, requestId}))
+    }
+  }
+
+  try {
+    await handleMessage(ws, json, reply)
+  } catch (error) {
+    core.error(`Failed to handle ${json.type} request: ${error}`)
+    reply({failure: `${error}`})
+  }
+}
+
+async function handleMessage(ws: WebSocket, json: any, reply: (response: object) => void) {
   if (json.type == "details") {
-    ws.send(JSON.stringify({
+    reply({
       repository: process.env['GITHUB_REPOSITORY'],
       id: parseInt(process.env['GITHUB_RUN_ID']!),
       token: process.env['GITHUB_TOKEN'],
-      userHome: await determineUserHome()
-    }))
+      userHome: userHome
+    })
   } else if (json.type == "command") {
     const command: string[] = json.command
+    const id: number = json.requestId
 
-    core.startGroup(`Executing "${command.join(' ')}"`)
+    // Log groups cannot nest, so the output of commands overlapping with others is not grouped
+    const grouped = runningCommands.size == 0
+    if (grouped) {
+      core.startGroup(`Executing "${command.join(' ')}"`)
+    } else {
+      core.info(`Executing "${command.join(' ')}"`)
+    }
+    runningCommands.add(id)
 
     let cmdLine = command.shift()!
     const optional = cmdLine.startsWith("?")
@@ -59,12 +109,14 @@ export async function onMessage(ws: WebSocket, msg: any) {
       cmdLine = cmdLine.substring(1)
     }
 
-    currentCommand = exec.getExecOutput(cmdLine, command, {
+    const running = exec.getExecOutput(cmdLine, command, {
       cwd: workspace,
       ignoreReturnCode: true
     })
     .then(executed => {
-      core.endGroup()
+      if (grouped) {
+        core.endGroup()
+      }
 
       let log = core.info
       if (executed.exitCode != 0) {
@@ -73,19 +125,20 @@ export async function onMessage(ws: WebSocket, msg: any) {
       log(`Command returned exit code ${executed.exitCode}`)
 
       if (!optional && executed.exitCode != 0) {
-        ws.send(JSON.stringify({
+        reply({
           stderr: executed.stderr
-        }))
+        })
       } else {
-        ws.send(JSON.stringify({
+        reply({
           stdout: executed.stdout
-        }))
+        })
       }
       return executed
     }).finally(() => {
-      currentCommand = null
+      runningCommands.delete(id)
     })
-
+    // Wait for the command so that a failure to start it is reported back
+    await running
   } else if (json.type == "background-command") {
     const id: string = json.id
     const command: string[] = json.command
@@ -106,27 +159,36 @@ export async function onMessage(ws: WebSocket, msg: any) {
     }).finally(() => backgroundCommands.delete(id))
     backgroundCommands.set(id, promise)
 
-    ws.send(JSON.stringify({output: file}))
+    reply({output: file})
   } else if (json.type == "set-env") {
     const name: string = json.name
     const value: string = json.value
     core.exportVariable(name, value)
-    ws.send("{}")
+    reply({})
   } else if (json.type == "write-file") {
     const pth = path.resolve(workspace, json.path)
-    await fs.mkdir(path.dirname(pth), {
-      recursive: true
-    })
-    await fs.writeFile(pth, json.content)
+    if (json.binary) {
+      // The upload must be registered before yielding, as the content frames follow the request immediately
+      await receiveUpload(json.requestId, pth)
+    } else {
+      await fs.mkdir(path.dirname(pth), {
+        recursive: true
+      })
+      await fs.writeFile(pth, json.content)
+    }
     console.log(`Written file to ${pth}`)
-    ws.send("{}")
+    reply({})
   } else if (json.type == "read-file") {
     const pth = path.resolve(workspace, json.path)
     try {
-      const file = await fs.readFile(pth)
-      ws.send(JSON.stringify({file: file.toString('base64')}))
+      if (json.binary) {
+        reply({size: await sendFile(ws, json.requestId, pth)})
+      } else {
+        const file = await fs.readFile(pth)
+        reply({file: file.toString('base64')})
+      }
     } catch (error) {
-      ws.send(JSON.stringify({error: error}))
+      reply({error: `${error}`})
     }
     console.log(`Read file from ${pth}`)
   } else if (json.type == "log") {
@@ -143,7 +205,7 @@ export async function onMessage(ws: WebSocket, msg: any) {
       core.debug(message)
     }
 
-    ws.send("{}")
+    reply({})
   } else if (json.type == 'eval') {
     const expression = json.expression
     console.log(`Evaluating '${expression}'`)
@@ -158,24 +220,56 @@ export async function onMessage(ws: WebSocket, msg: any) {
     }
     Object.keys(json.variables).forEach(key => vars[key] = json.variables[key])
 
-    ws.send(JSON.stringify({result: (nodeEval(toEval, 'expreval', vars, true) as any).result}))
+    reply({result: (nodeEval(toEval, 'expreval', vars, true) as any).result})
   } else if (json.type == 'save-cache') {
     const ch = await cache.saveCache(json.paths, json.key).catch(_ => undefined)
     if (ch == undefined) {
       console.error(`Cache could not be saved`)
-      ws.send(JSON.stringify({id: -1}))
+      reply({id: -1})
     } else {
       console.log(`Saved cache from ` + json.paths + ` as ` + json.key)
-      ws.send(JSON.stringify({id: ch}))
+      reply({id: ch})
     }
   } else if (json.type == 'restore-cache') {
     const ch = await cache.restoreCache(json.paths, json.key)
     if (ch) console.log(`Restored cache to ` + json.paths)
     else console.log(`No cache hit`)
-    ws.send("{}")
+    reply({})
   } else if (json.type == 'mask') {
     core.setSecret(json.value)
-    ws.send("{}")
+    reply({})
+  } else if (json.type == 'reset') {
+    // The runner is about to be given another job, so leave nothing behind from the previous one
+    if (runningCommands.size > 0 || backgroundCommands.size > 0) {
+      throw new Error('Cannot reset the runner while commands are still running')
+    }
+    // Jobs run the build code of pull requests, which must not outlive the job: stop the processes it left behind,
+    // such as Gradle daemons, and remove what it added to the user home, including the whole Gradle user home
+    for (const pid of await listProcesses()) {
+      if (pid != process.pid && !initialProcesses.has(pid)) {
+        try {
+          process.kill(pid, 'SIGKILL')
+        } catch (_) {
+          // The process exited in the meantime
+        }
+      }
+    }
+    for (const entry of await fs.readdir(userHome)) {
+      if (entry == '.gradle' || !initialHomeEntries.has(entry)) {
+        await fs.rm(path.resolve(userHome, entry), {recursive: true, force: true})
+      }
+    }
+    for (const entry of await fs.readdir(workspace)) {
+      await fs.rm(path.resolve(workspace, entry), {recursive: true, force: true})
+    }
+    for (const key of Object.keys(process.env)) {
+      if (!(key in initialEnv)) {
+        delete process.env[key]
+      }
+    }
+    Object.assign(process.env, initialEnv)
+    console.log(`Reset workspace for the next job`)
+    reply({})
   } else if (json.type == 'group') {
     const title = json.title
     if (title) {
@@ -183,15 +277,59 @@ export async function onMessage(ws: WebSocket, msg: any) {
     } else {
       core.endGroup()
     }
-    ws.send("{}")
+    reply({})
   }
 }
 
-export async function setupWs(url: string, msg: (ws: WebSocket, message: any) => any): Promise<WebSocket> {
+function receiveUpload(id: number, pth: string): Promise<void> {
+  streamfs.mkdirSync(path.dirname(pth), {
+    recursive: true
+  })
+  const stream = streamfs.createWriteStream(pth)
+  const done = new Promise<void>((resolve, reject) => {
+    stream.on('finish', resolve)
+    stream.on('error', reject)
+  }).finally(() => uploads.delete(id))
+  uploads.set(id, {stream, done})
+  return done
+}
+
+function onChunk(frame: Buffer) {
+  const id = Number(frame.readBigUInt64BE(0))
+  const upload = uploads.get(id)
+  if (!upload) {
+    core.warning(`Received content for unknown transfer ${id}`)
+    return
+  }
+
+  upload.stream.write(frame.subarray(HEADER_SIZE))
+  if (frame.readUInt8(8) & FLAG_LAST) {
+    upload.stream.end()
+  }
+}
+
+async function sendFile(ws: WebSocket, id: number, pth: string): Promise<number> {
+  let size = 0
+  const send = (content: Buffer, flags: number) => new Promise<void>((resolve, reject) => {
+    const header = Buffer.alloc(HEADER_SIZE)
+    header.writeBigUInt64BE(BigInt(id), 0)
+    header.writeUInt8(flags, 8)
+    ws.send(Buffer.concat([header, content]), {binary: true}, error => error ? reject(error) : resolve())
+  })
+
+  for await (const chunk of streamfs.createReadStream(pth, {highWaterMark: CHUNK_SIZE})) {
+    await send(chunk as Buffer, 0)
+    size += chunk.length
+  }
+  await send(Buffer.alloc(0), FLAG_LAST)
+  return size
+}
+
+export async function setupWs(url: string, msg: (ws: WebSocket, message: any, isBinary: boolean) => any): Promise<WebSocket> {
   const ws = new WebSocket(url)
 
-  ws.on('message', data => {
-    msg(ws, data)
+  ws.on('message', (data, isBinary) => {
+    msg(ws, data, isBinary)
   })
 
   ws.on('open', () => {
@@ -216,6 +354,23 @@ export function getRunURL(): string {
   return `${process.env['GITHUB_SERVER_URL']}/${process.env['GITHUB_REPOSITORY']}/actions/runs/${process.env['GITHUB_RUN_ID']}`
 }
 
+async function listProcesses(): Promise<Set<number>> {
+  const pids = new Set<number>()
+  if (process.platform == 'win32') {
+    const output = await exec.getExecOutput('tasklist', ['/fo', 'csv', '/nh'], {silent: true})
+    for (const line of output.stdout.split(/\r?\n/)) {
+      const columns = line.split('","')
+      if (columns.length > 1) pids.add(parseInt(columns[1]))
+    }
+  } else {
+    const output = await exec.getExecOutput('ps', ['-u', `${process.getuid!()}`, '-o', 'pid='], {silent: true})
+    for (const line of output.stdout.split('\n')) {
+      if (line.trim()) pids.add(parseInt(line.trim()))
+    }
+  }
+  return pids
+}
+
 async function determineUserHome(): Promise<string> {
   const output = await exec.getExecOutput('java', ['-XshowSettings:properties', '-version'], {silent: true})
   const regex = /user\.home = (\S*)/i
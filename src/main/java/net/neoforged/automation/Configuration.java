@@ -43,19 +43,17 @@ public record Configuration(
     @JsonIgnoreProperties(ignoreUnknown = true)
     public record RepoConfiguration(Boolean enabled,
                                     @JsonDeserialize(contentUsing = LabelHandlerConfig.Deserializer.class) Map<String, LabelHandlerConfig> labelHandlers,
-                                    @JsonDeserialize(using = NullDeser.class) List<Map.Entry<Pattern, LabelHandlerConfig>> regexLabelHandlers,
+                                    @JsonDeserialize(using = NullDeser.class) LabelHandlerResolver labelHandlerResolver,
                                     @Nullable String baseRunCommand, BackportConfiguration backport) {
         public RepoConfiguration {
             enabled = enabled == null || enabled;
             labelHandlers = labelHandlers == null ? Map.of() : labelHandlers;
             backport = backport == null ? BackportConfiguration.DEFAULT : backport;
 
-            regexLabelHandlers = labelHandlers.entrySet().stream()
-                    .filter(e -> e.getValue().regex())
-                    .map(e -> Map.entry(Pattern.compile(e.getKey()), e.getValue()))
-                    .toList();
+            // A new resolver per configuration instance, so that handlers memoized for a previous configuration are dropped on reload
+            labelHandlerResolver = new LabelHandlerResolver(labelHandlers);
         }
-        public static final RepoConfiguration DEFAULT = new RepoConfiguration(true, Map.of(), List.of(), null, BackportConfiguration.DEFAULT);
+        public static final RepoConfiguration DEFAULT = new RepoConfiguration(true, Map.of(), null, null, BackportConfiguration.DEFAULT);
 
         @Nullable
         @SuppressWarnings("unchecked")
@@ -66,15 +64,7 @@ public record Configuration(
 
         @Nullable
         public LabelHandler getLabelHandler(String label) {
-            var handlerConfig = labelHandlers.get(label);
-            if (handlerConfig != null && !handlerConfig.regex()) return handlerConfig.labelCreator().apply(null);
-            for (var entry : regexLabelHandlers) {
-                var matcher = entry.getKey().matcher(label);
-                if (matcher.matches()) {
-                    return entry.getValue().labelCreator().apply(matcher);
-                }
-            }
-            return null;
+            return labelHandlerResolver.get(label);
         }
 
         public record LabelHandlerConfig(boolean regex, Function<Matcher, LabelHandler> labelCreator) {
@@ -147,7 +137,7 @@ public record Configuration(
     }
 
     private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory().disable(YAMLGenerator.Feature.WRITE_DOC_START_MARKER).enable(YAMLGenerator.Feature.LITERAL_BLOCK_STYLE));
-    private static volatile Configuration configuration = new Configuration(new Commands(List.of(), false, false), new PRActions(null, null), Map.of());
+    private static volatile Configuration configuration = new Configuration(new Commands(List.of(), false, false), new PRActions(null, null, Map.of()), Map.of());
 
     public static void load(GitHub gitHub, RepoLocation location) throws IOException {
         configuration = getOrCommit(gitHub.getRepository(location.repo()), location.path(), location.branch());
@@ -173,13 +163,21 @@ public record Configuration(
     }
 
     public RepoConfiguration getRepo(GHRepository repository) {
-        return repositories().getOrDefault(repository.getFullName().toLowerCase(Locale.ROOT), RepoConfiguration.DEFAULT);
+        return getRepo(repository.getFullName());
+    }
+
+    public RepoConfiguration getRepo(String fullName) {
+        return repositories().getOrDefault(fullName.toLowerCase(Locale.ROOT), RepoConfiguration.DEFAULT);
     }
 
     public static RepoConfiguration get(GHRepository repository) {
         return configuration.getRepo(repository);
     }
 
+    public static RepoConfiguration get(String fullName) {
+        return configuration.getRepo(fullName);
+    }
+
     public static Configuration get() {
         return configuration;
     }
@@ -194,7 +192,33 @@ public record Configuration(
 
     public record Commands(List<String> prefixes, boolean reactToComment, boolean minimizeComment) {}
 
-    public record PRActions(String repository, String workflow) {}
+    /**
+     * @param cloneStrategies the strategy used to clone the repository on the runner, keyed by job: {@code run}, {@code backport},
+     *                        {@code backport-apply} and {@code benchmark}
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record PRActions(String repository, String workflow, Map<String, CloneStrategy> cloneStrategies) {
+        public PRActions {
+            cloneStrategies = cloneStrategies == null ? Map.of() : cloneStrategies;
+        }
+
+        public CloneStrategy cloneStrategy(String job) {
+            return cloneStrategies.getOrDefault(job, CloneStrategy.DEFAULT);
+        }
+    }
+
+    /**
+     * @param depth    the number of commits to fetch, or {@code null} to fetch the whole history
+     * @param blobless whether to defer fetching file contents until they are needed ({@code --filter=blob:none})
+     * @param tags     whether to fetch all tags of the repository
+     */
+    public record CloneStrategy(@Nullable Integer depth, Boolean blobless, Boolean tags) {
+        public CloneStrategy {
+            blobless = blobless != null && blobless;
+            tags = tags == null || tags;
+        }
+        public static final CloneStrategy DEFAULT = new CloneStrategy(null, false, true);
+    }
 
     @JsonDeserialize(using = ConditionalValue.DeSer.class)
     public static final class ConditionalValue<T> {
@@ -0,0 +1,113 @@
+package net.neoforged.automation;
+
+import net.neoforged.automation.webhook.label.LabelHandler;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Resolves the {@link LabelHandler} of a label for one {@link Configuration.RepoConfiguration repository configuration}.
+ * <p>
+ * Resolved handlers are memoized, so a handler is only deserialized once per label for as long as the configuration is loaded.
+ * The regex handlers are compiled into a single alternation to find the handler of a label in one pass.
+ */
+public final class LabelHandlerResolver {
+    private static final Pattern NAMED_GROUP = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(\\d|k<)");
+
+    private final Map<String, Configuration.RepoConfiguration.LabelHandlerConfig> labelHandlers;
+    private final List<Map.Entry<Pattern, Configuration.RepoConfiguration.LabelHandlerConfig>> regexLabelHandlers;
+    private final Map<String, Optional<LabelHandler>> resolved = new ConcurrentHashMap<>();
+
+    // The combined pattern and the group that each regex handler is wrapped in, or null if the patterns cannot be combined
+    @Nullable
+    private final Pattern combined;
+    private final int[] groups;
+
+    LabelHandlerResolver(Map<String, Configuration.RepoConfiguration.LabelHandlerConfig> labelHandlers) {
+        this.labelHandlers = labelHandlers;
+        this.regexLabelHandlers = labelHandlers.entrySet().stream()
+                .filter(e -> e.getValue().regex())
+                .map(e -> Map.entry(Pattern.compile(e.getKey()), e.getValue()))
+                .toList();
+
+        this.groups = new int[regexLabelHandlers.size()];
+        this.combined = combine();
+    }
+
+    @Nullable
+    public LabelHandler get(String label) {
+        return resolved.computeIfAbsent(label, l -> Optional.ofNullable(resolve(l))).orElse(null);
+    }
+
+    @Nullable
+    private LabelHandler resolve(String label) {
+        var handlerConfig = labelHandlers.get(label);
+        if (handlerConfig != null && !handlerConfig.regex()) return handlerConfig.labelCreator().apply(null);
+
+        if (combined != null) {
+            var matcher = combined.matcher(label);
+            if (!matcher.matches()) return null;
+            for (int i = 0; i < groups.length; i++) {
+                if (matcher.start(groups[i]) != -1) {
+                    // Match again against the original pattern, as the handler may refer to its named groups
+                    return create(regexLabelHandlers.get(i), label);
+                }
+            }
+            return null;
+        }
+
+        for (var entry : regexLabelHandlers) {
+            var handler = create(entry, label);
+            if (handler != null) return handler;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static LabelHandler create(Map.Entry<Pattern, Configuration.RepoConfiguration.LabelHandlerConfig> entry, String label) {
+        Matcher matcher = entry.getKey().matcher(label);
+        return matcher.matches() ? entry.getValue().labelCreator().apply(matcher) : null;
+    }
+
+    /**
+     * Combine the regex handler patterns into a single alternation, in declaration order, with each pattern wrapped in its own group.
+     * Named groups are turned into plain groups since names may not repeat across alternatives, which keeps the group numbering intact.
+     * Patterns with back references cannot be shifted to their new group offsets, in which case the patterns are matched one by one.
+     */
+    @Nullable
+    private Pattern combine() {
+        if (regexLabelHandlers.size() < 2) return null;
+
+        var alternation = new StringBuilder();
+        var group = 1;
+        for (int i = 0; i < regexLabelHandlers.size(); i++) {
+            var pattern = regexLabelHandlers.get(i).getKey();
+            if (BACK_REFERENCE.matcher(pattern.pattern()).find()) return null;
+
+            var unnamed = NAMED_GROUP.matcher(pattern.pattern()).replaceAll("(");
+            try {
+                if (Pattern.compile(unnamed).matcher("").groupCount() != pattern.matcher("").groupCount()) return null;
+            } catch (PatternSyntaxException exception) {
+                return null;
+            }
+
+            if (i > 0) alternation.append('|');
+            alternation.append('(').append(unnamed).append(')');
+            groups[i] = group;
+            group += pattern.matcher("").groupCount() + 1;
+        }
+
+        try {
+            return Pattern.compile(alternation.toString());
+        } catch (PatternSyntaxException exception) {
+            return null;
+        }
+    }
+}
@@ -6,8 +6,13 @@ import io.javalin.Javalin;
 import net.neoforged.automation.command.Commands;
 import net.neoforged.automation.db.Database;
 import net.neoforged.automation.discord.DiscordBot;
+import net.neoforged.automation.github.CachingConnector;
+import net.neoforged.automation.github.LabelIndex;
+import net.neoforged.automation.github.RateLimitedConnector;
 import net.neoforged.automation.runner.ActionRunnerHandler;
+import net.neoforged.automation.runner.Workspaces;
 import net.neoforged.automation.service.FileHostService;
+import net.neoforged.automation.service.MetricsService;
 import net.neoforged.automation.service.RenovateMetadataService;
 import net.neoforged.automation.util.AuthUtil;
 import net.neoforged.automation.util.GHAction;
@@ -23,6 +28,7 @@ import net.neoforged.automation.webhook.impl.WebhookHandler;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubAccessor;
 import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.connector.GitHubConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,6 +37,7 @@ import java.net.http.HttpClient;
 import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.time.Duration;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -52,6 +59,7 @@ public class Main {
         var startupConfig = StartupConfiguration.load(Path.of("config.properties"));
 
         Database.init();
+        Workspaces.init(startupConfig.getInt("checkoutQuotaMb", 0) * 1024L * 1024L);
 
         var gitHub = new GitHubBuilder()
                 .withAuthorizationProvider(AuthUtil.githubApp(
@@ -59,18 +67,45 @@ public class Main {
                         AuthUtil.parsePKCS8(startupConfig.get("gitHubAppKey", "")),
                         ghApp -> ghApp.getInstallationByOrganization(startupConfig.get("gitHubAppOrganization", ""))
                 ))
+                .withConnector(new CachingConnector(
+                        new RateLimitedConnector(GitHubConnector.DEFAULT),
+                        startupConfig.getInt("gitHubCacheSizeMb", 32) * 1024L * 1024L,
+                        startupConfig.get("gitHubCacheDirectory", "").isBlank() ? null : Path.of(startupConfig.get("gitHubCacheDirectory", "")),
+                        startupConfig.getInt("gitHubCacheDiskSizeMb", 256) * 1024L * 1024L
+                ))
                 .build();
 
         var location = Configuration.load(gitHub, startupConfig);
+        LabelIndex.warm(gitHub, Configuration.get().repositories().keySet());
 
         var webhook = setupWebhookHandlers(startupConfig, new WebhookHandler(startupConfig.get("webhookSecret", ""), gitHub), location);
-
+        if (startupConfig.getBoolean("webhookDeduplicate", true)) {
+            webhook.deduplicate(
+                    Duration.ofMinutes(startupConfig.getInt("webhookDeduplicateWindowMinutes", 60)),
+                    startupConfig.getInt("webhookDeduplicateSize", 10_000),
+                    startupConfig.getBoolean("webhookDeduplicatePersistent", false)
+            );
+        }
+        if (startupConfig.getBoolean("webhookLanePerIssue", false)) {
+            webhook.lanePerIssue();
+        }
         fileHostService = new FileHostService(Path.of("files"), startupConfig);
 
         actionRunner = new ActionRunnerHandler(startupConfig.resolveUrl("serverUrl", "/runner/<id>/ws"), Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
                 .name("action-runner-", 0)
                 .uncaughtExceptionHandler((t, e) -> LOGGER.error("Caught exception running action runner handler on thread {}:", t, e))
-                .factory()));
+                .factory()))
+                .dispatchTimeout(Duration.ofMinutes(startupConfig.getInt("runnerDispatchTimeoutMinutes", 15)))
+                .pool(
+                        startupConfig.getInt("runnerPoolSize", 0),
+                        Duration.ofMinutes(startupConfig.getInt("runnerIdleTimeoutMinutes", 10)),
+                        Duration.ofMinutes(startupConfig.getInt("runnerMaxLifetimeMinutes", 300))
+                );
+
+        // The queue replays persisted deliveries as soon as it starts, so everything handlers depend on must exist by then
+        if (startupConfig.getBoolean("webhookQueue", false)) {
+            webhook.queued();
+        }
 
         var app = Javalin.create(cfg -> {
                     cfg.useVirtualThreads = true;
@@ -80,6 +115,7 @@ public class Main {
 
                 .get("/file/<file>", fileHostService::get)
                 .get("/renovate/<package>/<current>", RenovateMetadataService::get)
+                .get("/metrics", MetricsService::get)
 
                 .start(startupConfig.getInt("port", 8080));
 
@@ -97,15 +133,17 @@ public class Main {
 
     public static WebhookHandler setupWebhookHandlers(StartupConfiguration startupConfig, WebhookHandler handler, Configuration.RepoLocation location) throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
         return handler
-                .register(new MergeConflictCheckHandler())
+                .register(new MergeConflictCheckHandler(Duration.ofSeconds(startupConfig.getInt("conflictCheckPushWindow", 10))))
                 .register(new LabelEventHandler())
                 .registerHandler(GitHubEvent.PUSH, new ConfigurationUpdateHandler(location))
+                .registerHandler(GitHubEvent.LABEL, (gitHub, payload) -> LabelIndex.update(payload))
                 .registerHandler(GitHubEvent.STATUS, new ReleaseMessageHandler(new GitHubBuilder()
                         .withAuthorizationProvider(AuthUtil.githubApp(
                                 startupConfig.get("releasesGitHubAppId", ""),
                                 AuthUtil.parsePKCS8(startupConfig.get("releasesGitHubAppKey", "")),
                                 ghApp -> ghApp.getInstallationByOrganization(startupConfig.get("releasesGitHubAppOrganization", ""))
                         ))
+                        .withConnector(new RateLimitedConnector(GitHubConnector.DEFAULT))
                         .build()))
                 .registerFilteredHandler(GitHubEvent.ISSUE_COMMENT, new CommandHandler(Commands.register(new CommandDispatcher<>())), GHAction.CREATED)
                 .registerFilteredHandler(GitHubEvent.PULL_REQUEST, new AutomaticLabelHandler(), GHAction.OPENED, GHAction.REOPENED)
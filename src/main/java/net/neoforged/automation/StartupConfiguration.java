@@ -34,6 +34,10 @@ public record StartupConfiguration(Properties properties) {
         return Integer.parseInt(get(key, String.valueOf(defaultValue)));
     }
 
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+
     public String resolveUrl(String key, String path) {
         var value = get(key, "");
         if (!value.endsWith("/")) {
@@ -2,19 +2,18 @@ package net.neoforged.automation.command;
 
 import net.neoforged.automation.Configuration;
 import net.neoforged.automation.Main;
+import net.neoforged.automation.github.DiffStore;
 import net.neoforged.automation.runner.ActionExceptionHandler;
 import net.neoforged.automation.runner.ActionRunner;
 import net.neoforged.automation.runner.GitRunner;
 import net.neoforged.automation.util.DiffUtils;
 import net.neoforged.automation.util.FunctionalInterfaces;
 import net.neoforged.automation.webhook.handler.AutomaticLabelHandler;
-import org.eclipse.jgit.transport.RefSpec;
 import org.jetbrains.annotations.Nullable;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubAccessor;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
@@ -85,9 +84,10 @@ public class BackportCommand {
         var backport = configuration.getRepo(pr.getRepository()).backport();
         Main.actionRunner(gh, configuration.prActions())
                 .name("Backport " + pr.getRepository().getFullName() + " #" + pr.getNumber() + " to " + branch + ": generate patch")
+                .scope(pr)
                 .run(runner -> {
                     runner.git("init");
-                    runner.clone(pr.getRepository().getHtmlUrl() + ".git", "origin", pr.getBase().getSha());
+                    runner.clone(pr.getRepository().getHtmlUrl() + ".git", "origin", pr.getBase().getSha(), configuration.prActions().cloneStrategy("backport"));
 
                     runner.detectAndSetJavaVersion();
 
@@ -105,7 +105,9 @@ public class BackportCommand {
                                     }
                                 }
 
-                                runner.writeFile("__diff", GitHubAccessor.readDiff(pr));
+                                try (var prDiff = DiffStore.open(pr)) {
+                                    runner.writeFile("__diff", prDiff);
+                                }
                                 runner.git("apply", "--ignore-whitespace", "__diff");
                                 runner.exec("rm", "__diff");
 
@@ -130,9 +132,10 @@ public class BackportCommand {
         var backport = configuration.getRepo(pr.getRepository()).backport();
         Main.actionRunner(gh, configuration.prActions())
                 .name("Backport " + pr.getRepository().getFullName() + " #" + pr.getNumber() + " to " + branch + ": apply patch")
+                .scope(pr)
                 .run(runner -> {
                     runner.git("init");
-                    runner.clone(pr.getRepository().getHtmlUrl() + ".git", "origin", branch);
+                    runner.clone(pr.getRepository().getHtmlUrl() + ".git", "origin", branch, configuration.prActions().cloneStrategy("backport-apply"));
 
                     runner.detectAndSetJavaVersion();
 
@@ -171,31 +174,14 @@ public class BackportCommand {
 
                     var newDiff = runner.diff().getBytes(StandardCharsets.UTF_8);
 
-                    runner.log("Diff created... PR is being created... Stopping runner");
-                    runner.stop();
-
-                    GitRunner.setupRepo(gh, pr.getRepository(), branch, (dir, git, creds) -> {
-                        git.apply().setPatch(new ByteArrayInputStream(newDiff)).call();
-
-                        git.add().addFilepattern(".").call();
-
-                        git.commit().setCredentialsProvider(creds)
-                                .setCommitter(GitHubAccessor.ident(pr.getUser()))
-                                .setMessage("Backport #" + pr.getNumber() + " to " + branch)
-                                .setSign(false)
-                                .setNoVerify(true)
-                                .call();
-
-                        var newBranch = "backport/" + branch + "/" + pr.getNumber();
+                    runner.log("Diff created... PR is being created...");
 
-                        git.push().setRemote("origin")
-                                .setForce(true)
-                                .setRefSpecs(new RefSpec("HEAD:refs/heads/" + newBranch))
-                                .setCredentialsProvider(creds)
-                                .call();
-
-                        onSuccess.accept(newBranch);
-                    });
+                    var newBranch = "backport/" + branch + "/" + pr.getNumber();
+                    GitRunner.pushPatch(
+                            gh, pr.getRepository(), "refs/heads/" + branch, pr.getRepository(), newBranch, newDiff,
+                            "Backport #" + pr.getNumber() + " to " + branch, GitHubAccessor.ident(pr.getUser()), true
+                    );
+                    onSuccess.accept(newBranch);
                 })
                 .onFailure(exception)
                 .queue();
@@ -212,13 +198,15 @@ public class BackportCommand {
         }
     }
 
-    private static Map<String, ?> computeVariables(GHPullRequest pr, String branch) {
-        return Map.of(
-                "pr", Map.of(
-                        "base", pr.getBase().getRef(),
-                        "changedFiles", DiffUtils.detectChangedFiles(GitHubAccessor.readDiff(pr).trim().split("\n"))
-                ),
-                "target", branch
-        );
+    private static Map<String, ?> computeVariables(GHPullRequest pr, String branch) throws IOException {
+        try (var diff = DiffStore.open(pr)) {
+            return Map.of(
+                    "pr", Map.of(
+                            "base", pr.getBase().getRef(),
+                            "changedFiles", DiffUtils.detectChangedFiles(diff)
+                    ),
+                    "target", branch
+            );
+        }
     }
 }
@@ -63,11 +63,12 @@ public class BenchmarkCommand {
                                     FunctionalInterfaces.ConsumerException<String> onSuccess) throws IOException {
         Main.actionRunner(gh, configuration.prActions())
                 .name("Benchmark " + pr.getRepository().getFullName() + " #" + pr.getNumber() + ": " + type)
+                .scope(pr)
                 .run(runner -> {
                     listener.addStep(type + ": Started action runner " + runner.getRun(gh).getHtmlUrl());
 
                     runner.git("init");
-                    runner.clone(pr.getRepository().getHtmlUrl() + ".git", "origin", target);
+                    runner.clone(pr.getRepository().getHtmlUrl() + ".git", "origin", target, configuration.prActions().cloneStrategy("benchmark"));
 
                     runner.detectAndSetJavaVersion();
 
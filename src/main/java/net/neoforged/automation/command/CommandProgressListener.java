@@ -3,6 +3,7 @@ package net.neoforged.automation.command;
 import net.neoforged.automation.command.api.GHCommandContext;
 import net.neoforged.automation.runner.ActionRunner;
 import net.neoforged.automation.util.Util;
+import org.jetbrains.annotations.Nullable;
 import org.kohsuke.github.GHIssueComment;
 
 import java.io.IOException;
@@ -40,7 +41,7 @@ public class CommandProgressListener {
         }
     }
 
-    public void handleFailure(ActionRunner runner, String err) {
+    public void handleFailure(@Nullable ActionRunner runner, String err) {
         context.onError().run();
         try {
             var message = new StringBuilder();
@@ -49,7 +50,11 @@ public class CommandProgressListener {
 
             message.append("<details>\n\n<summary>Click for failure reason</summary>\n\n");
 
-            message.append(err).append("\n").append(runner.getRun(context.gitHub()).getHtmlUrl()).append("\n\n</details>");
+            message.append(err).append("\n");
+            if (runner != null) {
+                message.append(runner.getRun(context.gitHub()).getHtmlUrl());
+            }
+            message.append("\n\n</details>");
 
             context.issue().comment(message.toString());
         } catch (Exception ex) {
@@ -35,7 +35,7 @@ public class Commands {
                                             context.getSource().onError().run();
                                             try {
                                                 context.getSource().issue()
-                                                        .comment("Workflow failed: " + err.getHtmlUrl());
+                                                        .comment(err == null ? "Workflow runner did not start in time" : "Workflow failed: " + err.getHtmlUrl());
                                             } catch (Exception ex) {
                                                 throw new RuntimeException(ex);
                                             }
@@ -70,7 +70,11 @@ public class Commands {
 
                                             message.append("<details>\n\n<summary>Click for failure reason</summary>\n\n");
 
-                                            message.append(err).append("\n").append(runner.getRun(context.getSource().gitHub()).getHtmlUrl()).append("\n\n</details>");
+                                            message.append(err).append("\n");
+                                            if (runner != null) {
+                                                message.append(runner.getRun(context.getSource().gitHub()).getHtmlUrl());
+                                            }
+                                            message.append("\n\n</details>");
 
                                             source.issue().comment(message.toString());
                                         } catch (Exception ex) {
@@ -3,12 +3,10 @@ package net.neoforged.automation.command;
 import net.neoforged.automation.Configuration;
 import net.neoforged.automation.Main;
 import net.neoforged.automation.runner.GitRunner;
-import org.eclipse.jgit.transport.RefSpec;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GHWorkflowRun;
 import org.kohsuke.github.GitHub;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -18,9 +16,10 @@ public class FormattingCommand {
 
     public static void run(GitHub gh, GHPullRequest pr, Configuration.PRActions actions, Configuration.RepoConfiguration repoConfiguration, List<String> commands, Consumer<GHWorkflowRun> onFailure, Runnable onSuccess) throws IOException {
         Main.actionRunner(gh, actions)
+                .scope(pr)
                 .run(runner -> {
                     runner.git("init");
-                    runner.clone(pr.getRepository().getHtmlUrl() + ".git", "origin", "pull/" + pr.getNumber() + "/head");
+                    runner.clone(pr.getRepository().getHtmlUrl() + ".git", "origin", "pull/" + pr.getNumber() + "/head", actions.cloneStrategy("run"));
 
                     runner.detectAndSetJavaVersion();
 
@@ -39,25 +38,12 @@ public class FormattingCommand {
 
                     var diff = runner.diff().getBytes(StandardCharsets.UTF_8);
 
-                    runner.log("Finished executing commands... shutting down runner.");
-                    runner.stop();
+                    runner.log("Finished executing commands... pushing changes.");
 
-                    GitRunner.setupPR(gh, pr, (dir, git, creds) -> {
-                        git.apply().setPatch(new ByteArrayInputStream(diff)).call();
-
-                        git.add().addFilepattern(".").call();
-
-                        git.commit().setCredentialsProvider(creds)
-                                .setCommitter(creds.getPerson())
-                                .setMessage("Run `" + String.join(" ", commands) + "`")
-                                .setSign(false)
-                                .setNoVerify(true)
-                                .call();
-                        git.push().setRemote("origin").setRefSpecs(new RefSpec("HEAD:refs/heads/" + pr.getHead().getRef())).setCredentialsProvider(creds).call();
-                        onSuccess.run();
-                    });
+                    GitRunner.pushPatch(gh, pr, diff, "Run `" + String.join(" ", commands) + "`", null);
+                    onSuccess.run();
                 })
-                .onFailure((actionRunner, msg) -> onFailure.accept(actionRunner.getRun(gh)))
+                .onFailure((actionRunner, msg) -> onFailure.accept(actionRunner == null ? null : actionRunner.getRun(gh)))
                 .queue();
     }
 }
@@ -1,5 +1,6 @@
 package net.neoforged.automation.command.api;
 
+import net.neoforged.automation.util.FunctionalInterfaces;
 import org.kohsuke.github.GHEventPayload;
 import org.kohsuke.github.GHIssue;
 import org.kohsuke.github.GHPullRequest;
@@ -9,9 +10,14 @@ import org.kohsuke.github.GitHub;
 
 import java.io.IOException;
 
-public record GHCommandContext(GitHub gitHub, GHEventPayload.IssueComment payload, Runnable onError, Runnable onSuccess, String command) {
+public record GHCommandContext(GitHub gitHub, GHEventPayload.IssueComment payload, Runnable onError, Runnable onSuccess, String command, FunctionalInterfaces.SupplierException<GHPullRequest> pullRequestLookup) {
     public static final int DEFERRED_RESPONSE = 2;
 
+    public GHCommandContext(GitHub gitHub, GHEventPayload.IssueComment payload, Runnable onError, Runnable onSuccess, String command) {
+        // Comments do not carry the head of the pull request, so the pull request is looked up fresh, once per command
+        this(gitHub, payload, onError, onSuccess, command, FunctionalInterfaces.memoize(() -> payload.getIssue().getRepository().getPullRequest(payload.getIssue().getNumber())));
+    }
+
     public GHUser user() {
         return payload.getSender();
     }
@@ -25,6 +31,6 @@ public record GHCommandContext(GitHub gitHub, GHEventPayload.IssueComment payloa
     }
 
     public GHPullRequest pullRequest() throws IOException {
-        return repository().getPullRequest(issue().getNumber());
+        return pullRequestLookup.get();
     }
 }
@@ -51,6 +51,9 @@ public class Database {
         dataSource.setDatabaseName(name);
         dataSource.setEnforceForeignKeys(true);
         dataSource.setCaseSensitiveLike(false);
+        // The webhook queue is written to from request threads while workers drain it
+        dataSource.setJournalMode("WAL");
+        dataSource.setBusyTimeout(5000);
 
         final var flyway = flywayConfig.apply(Flyway.configure().dataSource(dataSource)).load();
         flyway.migrate();
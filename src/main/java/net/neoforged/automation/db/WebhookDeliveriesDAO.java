@@ -0,0 +1,23 @@
+package net.neoforged.automation.db;
+
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jdbi.v3.sqlobject.transaction.Transactional;
+
+public interface WebhookDeliveriesDAO extends Transactional<WebhookDeliveriesDAO> {
+    /**
+     * Record the delivery as received at the given time.
+     *
+     * @return {@code 1} if the delivery was not seen after {@code cutoff}, {@code 0} otherwise
+     */
+    @SqlUpdate("""
+            insert into webhook_deliveries (delivery, received_at) values (:delivery, :time)
+            on conflict (delivery) do update set received_at = :time where received_at < :cutoff""")
+    int record(@Bind("delivery") String delivery, @Bind("time") long time, @Bind("cutoff") long cutoff);
+
+    @SqlUpdate("delete from webhook_deliveries where delivery = :delivery")
+    void forget(@Bind("delivery") String delivery);
+
+    @SqlUpdate("delete from webhook_deliveries where received_at < :cutoff")
+    void prune(@Bind("cutoff") long cutoff);
+}
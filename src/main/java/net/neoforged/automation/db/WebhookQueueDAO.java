@@ -0,0 +1,37 @@
+package net.neoforged.automation.db;
+
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.GetGeneratedKeys;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jdbi.v3.sqlobject.transaction.Transactional;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+public interface WebhookQueueDAO extends Transactional<WebhookQueueDAO> {
+    @GetGeneratedKeys
+    @SqlUpdate("insert into webhook_queue (delivery, event, body) values (:delivery, :event, :body)")
+    long enqueue(@Bind("delivery") @Nullable String delivery, @Bind("event") String event, @Bind("body") byte[] body);
+
+    @RegisterRowMapper(Delivery.Mapper.class)
+    @SqlQuery("select id, delivery, event, body from webhook_queue order by id")
+    List<Delivery> pending();
+
+    @SqlUpdate("delete from webhook_queue where id = :id")
+    void remove(@Bind("id") long id);
+
+    record Delivery(long id, @Nullable String delivery, String event, byte[] body) {
+        public static final class Mapper implements RowMapper<Delivery> {
+            @Override
+            public Delivery map(ResultSet rs, StatementContext ctx) throws SQLException {
+                return new Delivery(rs.getLong("id"), rs.getString("delivery"), rs.getString("event"), rs.getBytes("body"));
+            }
+        }
+    }
+}
@@ -13,6 +13,8 @@ import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.neoforged.automation.Main;
 import net.neoforged.automation.StartupConfiguration;
 import net.neoforged.automation.discord.command.GitHubCommand;
+import net.neoforged.automation.github.PullRequestLookups;
+import net.neoforged.automation.github.RequestPriority;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
 import org.slf4j.Logger;
@@ -70,7 +72,7 @@ public class DiscordBot {
     }
 
     private static void updateRepos(GitHub gitHub) {
-        try {
+        try (var ignored = RequestPriority.BACKGROUND.enter()) {
             synchronized (DiscordBot.class) {
                 knownRepositories = gitHub.getInstallation().listRepositories().toList()
                         .stream()
@@ -99,7 +101,7 @@ public class DiscordBot {
             if (repoName == null || repoName.isBlank()) return;
 
             try {
-                var repo = gitHub.getRepository(repoName);
+                var repo = PullRequestLookups.repository(gitHub, repoName);
 
                 event.replyChoices(repo.getBranches().keySet()
                         .stream().filter(filterContainsCurrent(event))
@@ -5,6 +5,7 @@ import com.jagrosh.jdautilities.command.SlashCommandEvent;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.neoforged.automation.discord.DiscordBot;
+import net.neoforged.automation.github.RequestPriority;
 import net.neoforged.automation.runner.GitRunner;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.transport.RefSpec;
@@ -119,6 +120,12 @@ public class GitHubCommand extends BaseDiscordCommand {
             addAutoCompleteHandler("repo", DiscordBot::suggestRepositories);
         }
 
+        @Override
+        protected RequestPriority priority() {
+            // Purging may issue hundreds of deletions
+            return RequestPriority.BACKGROUND;
+        }
+
         @Override
         protected void execute(SlashCommandEvent event, GHUser githubUser) throws Exception {
             var repo = gitHub.getRepository(event.optString("repo"));
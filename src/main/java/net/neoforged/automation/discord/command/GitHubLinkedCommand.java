@@ -3,6 +3,7 @@ package net.neoforged.automation.discord.command;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
 import net.neoforged.automation.db.Database;
 import net.neoforged.automation.db.DiscordUsersDAO;
+import net.neoforged.automation.github.RequestPriority;
 import org.kohsuke.github.GHPermissionType;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GHUser;
@@ -23,7 +24,7 @@ public abstract class GitHubLinkedCommand extends BaseDiscordCommand {
             return;
         }
 
-        try {
+        try (var ignored = priority().enter()) {
             execute(event, gitHub.getUser(github));
         } catch (ValidationException v) {
             event.getHook().sendMessage(v.getMessage()).queue();
@@ -34,6 +35,13 @@ public abstract class GitHubLinkedCommand extends BaseDiscordCommand {
 
     protected abstract void execute(SlashCommandEvent event, GHUser githubUser) throws Exception;
 
+    /**
+     * {@return the priority of the GitHub requests made by this command}
+     */
+    protected RequestPriority priority() {
+        return RequestPriority.INTERACTIVE;
+    }
+
     protected void checkUserAccess(GHRepository repo, GHUser githubUser) throws Exception {
         if (!repo.hasPermission(githubUser, GHPermissionType.WRITE)) {
             throw new ValidationException("You cannot push to this repo!");
@@ -0,0 +1,368 @@
+package net.neoforged.automation.github;
+
+import net.neoforged.automation.Main;
+import net.neoforged.automation.service.MetricsService;
+import org.jetbrains.annotations.Nullable;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link GitHubConnector} that caches {@code GET} responses and revalidates them with conditional requests.
+ * <p>
+ * Responses carrying an {@code ETag} or {@code Last-Modified} header are kept in a memory LRU bounded by size, and
+ * optionally on disk. Further requests to the same URL send {@code If-None-Match}/{@code If-Modified-Since}, and a
+ * {@code 304 Not Modified} answer, which GitHub does not count against the rate limit, is served from the cache.
+ * Cached responses are always revalidated, so the cache never serves data the current credentials may not see.
+ * <p>
+ * Only JSON responses of at most {@link #MAX_ENTRY_BYTES} are cached, larger ones and other media types such as diffs
+ * are streamed through. The disk tier is bounded too, evicting the least recently used files.
+ */
+public final class CachingConnector implements GitHubConnector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingConnector.class);
+    private static final int ENTRY_OVERHEAD = 512;
+    private static final int MAX_ENTRY_BYTES = 1024 * 1024;
+    private static final int SWEEP_INTERVAL = 64;
+    /**
+     * Headers of a {@code 304} response which describe its (empty) body, rather than the cached one.
+     */
+    private static final Set<String> BODY_HEADERS = Set.of("content-length", "content-encoding", "content-type", "transfer-encoding");
+
+    private static final MetricsService.Counter HITS = MetricsService.counter("github_cache_hits_total", "GitHub requests answered from the cache after revalidation");
+    private static final MetricsService.Counter MISSES = MetricsService.counter("github_cache_misses_total", "Cacheable GitHub requests that returned a full response");
+    private static final MetricsService.Counter BYTES_SAVED = MetricsService.counter("github_cache_bytes_saved_total", "Response bytes served from the cache instead of being downloaded");
+
+    static {
+        MetricsService.gauge("github_cache_hit_ratio", "Ratio of cacheable GitHub requests answered from the cache", () -> {
+            var total = HITS.get() + MISSES.get();
+            return total == 0 ? 0 : (double) HITS.get() / total;
+        });
+    }
+
+    private final GitHubConnector delegate;
+    private final long maxBytes;
+    @Nullable
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final AtomicInteger writes = new AtomicInteger();
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * @param delegate  the connector sending the requests
+     * @param maxBytes  the maximum size of the responses kept in memory
+     * @param directory the directory to additionally keep responses in, or {@code null} to only keep them in memory
+     * @param maxDiskBytes the maximum size of the responses kept on disk
+     */
+    public CachingConnector(GitHubConnector delegate, long maxBytes, @Nullable Path directory, long maxDiskBytes) throws IOException {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        MetricsService.gauge("github_cache_memory_bytes", "Size of the GitHub responses cached in memory", () -> {
+            synchronized (entries) {
+                return bytes;
+            }
+        });
+    }
+
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+        if (!request.method().equals("GET") || request.hasBody() || !acceptsJson(request)) {
+            return delegate.send(request);
+        }
+
+        final var key = request.url() + " " + request.header("Accept");
+        final var cached = get(key);
+
+        final GitHubConnectorRequest sent;
+        if (cached == null) {
+            sent = request;
+        } else {
+            final var conditional = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+            conditional.putAll(request.allHeaders());
+            if (cached.header("ETag") != null) {
+                conditional.put("If-None-Match", List.of(cached.header("ETag")));
+            } else {
+                conditional.put("If-Modified-Since", List.of(cached.header("Last-Modified")));
+            }
+            sent = new ConditionalRequest(request, conditional);
+        }
+
+        final var response = delegate.send(sent);
+        if (cached != null && response.statusCode() == 304) {
+            final var headers = headers(cached.headers());
+            response.allHeaders().forEach((name, values) -> {
+                if (name != null && !BODY_HEADERS.contains(name.toLowerCase())) {
+                    headers.put(name, values);
+                }
+            });
+            response.close();
+
+            HITS.increment();
+            BYTES_SAVED.add(cached.body().length);
+            return new CachedResponse(request, headers, cached.body());
+        }
+
+        if (response.statusCode() != 200 || (response.header("ETag") == null && response.header("Last-Modified") == null)) {
+            return response;
+        }
+
+        final var contentLength = response.header("Content-Length");
+        if (contentLength != null && Long.parseLong(contentLength) > MAX_ENTRY_BYTES) {
+            return response;
+        }
+
+        MISSES.increment();
+        // The body is decompressed when read
+        final var headers = headers(response.allHeaders());
+        BODY_HEADERS.forEach(headers::remove);
+
+        final InputStream stream;
+        final byte[] body;
+        try {
+            stream = response.bodyStream();
+            body = stream == null ? new byte[0] : stream.readNBytes(MAX_ENTRY_BYTES + 1);
+        } catch (IOException exception) {
+            response.close();
+            throw exception;
+        }
+        if (body.length > MAX_ENTRY_BYTES) {
+            // Compressed responses do not tell their size up front, so hand back what was read followed by the rest of the stream
+            return new StreamedResponse(request, headers, new SequenceInputStream(new ByteArrayInputStream(body), stream), response);
+        }
+        response.close();
+
+        final var entry = new Entry(headers, body);
+        put(key, entry);
+        return new CachedResponse(request, headers(headers), body);
+    }
+
+    @Nullable
+    private Entry get(String key) {
+        synchronized (entries) {
+            var entry = entries.get(key);
+            if (entry != null) return entry;
+        }
+        if (directory == null) return null;
+
+        final var file = directory.resolve(hash(key));
+        if (!Files.exists(file)) return null;
+        try {
+            final var entry = Main.JSON.readValue(file.toFile(), Entry.class);
+            // The modification time orders the files for eviction
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            putInMemory(key, entry);
+            return entry;
+        } catch (IOException exception) {
+            LOGGER.warn("Failed to read cached GitHub response {}", file, exception);
+            return null;
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        putInMemory(key, entry);
+        if (directory != null) {
+            try {
+                final var file = directory.resolve(hash(key));
+                final var temp = Files.createTempFile(directory, "response", ".tmp");
+                Main.JSON.writeValue(temp.toFile(), entry);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                if (writes.incrementAndGet() % SWEEP_INTERVAL == 0) {
+                    sweep();
+                }
+            } catch (IOException exception) {
+                LOGGER.warn("Failed to cache GitHub response on disk", exception);
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used files on disk until the disk tier fits in its bound.
+     */
+    private void sweep() throws IOException {
+        final List<Path> files;
+        try (var stream = Files.list(directory)) {
+            files = stream.filter(file -> !file.getFileName().toString().endsWith(".tmp")).toList();
+        }
+
+        record CachedFile(Path path, long size, FileTime lastUsed) {}
+        final var cached = new ArrayList<CachedFile>();
+        long total = 0;
+        for (var file : files) {
+            try {
+                var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                cached.add(new CachedFile(file, attributes.size(), attributes.lastModifiedTime()));
+                total += attributes.size();
+            } catch (NoSuchFileException ignored) {
+                // Replaced concurrently
+            }
+        }
+
+        cached.sort(Comparator.comparing(CachedFile::lastUsed));
+        for (var file : cached) {
+            if (total <= maxDiskBytes) break;
+            Files.deleteIfExists(file.path());
+            total -= file.size();
+        }
+    }
+
+    private static boolean acceptsJson(GitHubConnectorRequest request) {
+        final var accept = request.header("Accept");
+        return accept == null || accept.contains("json");
+    }
+
+    private void putInMemory(String key, Entry entry) {
+        synchronized (entries) {
+            var old = entries.put(key, entry);
+            if (old != null) bytes -= old.size();
+            bytes += entry.size();
+
+            var iterator = entries.values().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                bytes -= iterator.next().size();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static Map<String, List<String>> headers(Map<String, List<String>> headers) {
+        final var copy = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        headers.forEach((name, values) -> {
+            // The status line may be reported under a null name
+            if (name != null) copy.put(name, values);
+        });
+        return copy;
+    }
+
+    private static String hash(String key) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record Entry(Map<String, List<String>> headers, byte[] body) {
+        @Nullable
+        String header(String name) {
+            for (var header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+                    return header.getValue().getFirst();
+                }
+            }
+            return null;
+        }
+
+        long size() {
+            return body.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    private record ConditionalRequest(GitHubConnectorRequest request, Map<String, List<String>> allHeaders) implements GitHubConnectorRequest {
+        @Override
+        public String method() {
+            return request.method();
+        }
+
+        @Override
+        @Nullable
+        public String header(String name) {
+            var values = allHeaders.get(name);
+            return values == null || values.isEmpty() ? null : String.join(",", values);
+        }
+
+        @Override
+        @Nullable
+        public String contentType() {
+            return request.contentType();
+        }
+
+        @Override
+        @Nullable
+        public InputStream body() {
+            return request.body();
+        }
+
+        @Override
+        public URL url() {
+            return request.url();
+        }
+
+        @Override
+        public boolean hasBody() {
+            return request.hasBody();
+        }
+    }
+
+    private static final class StreamedResponse extends GitHubConnectorResponse {
+        private final InputStream body;
+        private final GitHubConnectorResponse original;
+
+        private StreamedResponse(GitHubConnectorRequest request, Map<String, List<String>> headers, InputStream body, GitHubConnectorResponse original) {
+            super(request, 200, headers);
+            this.body = body;
+            this.original = original;
+        }
+
+        @Override
+        protected InputStream rawBodyStream() {
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            original.close();
+        }
+    }
+
+    private static final class CachedResponse extends GitHubConnectorResponse {
+        private final byte[] body;
+
+        private CachedResponse(GitHubConnectorRequest request, Map<String, List<String>> headers, byte[] body) {
+            super(request, 200, headers);
+            this.body = body;
+        }
+
+        @Override
+        protected InputStream rawBodyStream() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package net.neoforged.automation.github;
+
+import net.neoforged.automation.Main;
+import net.neoforged.automation.service.MetricsService;
+import org.jetbrains.annotations.Nullable;
+import org.kohsuke.github.GHPullRequest;
+import org.kohsuke.github.GitHubAccessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A store of pull request diffs, keyed by the repository and the head and base SHAs of the pull request.
+ * <p>
+ * Diffs are streamed from GitHub straight into gzip, and kept compressed both in a memory LRU and on disk, so each
+ * revision of a pull request is downloaded once. Concurrent reads of a diff that is not stored yet share a single
+ * download. Files on disk that were not used for {@link #DISK_RETENTION} are deleted.
+ */
+public final class DiffStore {
+    private static final Path DIRECTORY = Path.of("cache/diffs");
+    private static final long MAX_MEMORY_BYTES = 64L * 1024 * 1024;
+    private static final Duration DISK_RETENTION = Duration.ofDays(7);
+    private static final int SWEEP_INTERVAL = 64;
+
+    private static final MetricsService.Counter HITS = MetricsService.counter("diff_store_hits_total", "Diff reads served from the store");
+    private static final MetricsService.Counter DOWNLOADS = MetricsService.counter("diff_store_downloads_total", "Diffs downloaded from GitHub");
+
+    private static final LinkedHashMap<Key, byte[]> MEMORY = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<Key, CompletableFuture<byte[]>> DOWNLOADING = new ConcurrentHashMap<>();
+    private static final AtomicInteger WRITES = new AtomicInteger();
+    private static long memoryBytes;
+
+    /**
+     * {@return the diff of the given pull request, as text}
+     */
+    public static String read(GHPullRequest pr) throws IOException {
+        try (var in = open(pr)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * {@return a stream of the diff of the given pull request}
+     */
+    public static InputStream open(GHPullRequest pr) throws IOException {
+        return new GZIPInputStream(new ByteArrayInputStream(compressed(pr)));
+    }
+
+    private static byte[] compressed(GHPullRequest pr) throws IOException {
+        final var key = new Key(pr.getRepository().getFullName().toLowerCase(Locale.ROOT), pr.getHead().getSha(), pr.getBase().getSha());
+
+        final var file = DIRECTORY.resolve(key.fileName());
+        final var stored = stored(key, file);
+        if (stored != null) return stored;
+
+        final var download = new CompletableFuture<byte[]>();
+        final var existing = DOWNLOADING.putIfAbsent(key, download);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException exception) {
+                if (exception.getCause() instanceof IOException io) throw io;
+                throw exception;
+            }
+        }
+
+        try {
+            // A download that finished between the lookup above and claiming this one has already stored the diff
+            final var raced = stored(key, file);
+            if (raced != null) {
+                download.complete(raced);
+                return raced;
+            }
+
+            final var compressed = GitHubAccessor.readDiff(pr, in -> {
+                final var out = new ByteArrayOutputStream();
+                try (var gzip = new GZIPOutputStream(out)) {
+                    in.transferTo(gzip);
+                }
+                return out.toByteArray();
+            });
+            DOWNLOADS.increment();
+            remember(key, compressed);
+            write(file, compressed);
+            download.complete(compressed);
+            return compressed;
+        } catch (IOException | RuntimeException exception) {
+            download.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            DOWNLOADING.remove(key, download);
+        }
+    }
+
+    @Nullable
+    private static byte[] stored(Key key, Path file) throws IOException {
+        synchronized (MEMORY) {
+            var stored = MEMORY.get(key);
+            if (stored != null) {
+                HITS.increment();
+                return stored;
+            }
+        }
+
+        if (Files.exists(file)) {
+            final var stored = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            HITS.increment();
+            remember(key, stored);
+            return stored;
+        }
+        return null;
+    }
+
+    private static void remember(Key key, byte[] compressed) {
+        synchronized (MEMORY) {
+            var old = MEMORY.put(key, compressed);
+            if (old != null) memoryBytes -= old.length;
+            memoryBytes += compressed.length;
+
+            var iterator = MEMORY.values().iterator();
+            while (memoryBytes > MAX_MEMORY_BYTES && iterator.hasNext()) {
+                memoryBytes -= iterator.next().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void write(Path file, byte[] compressed) {
+        try {
+            Files.createDirectories(DIRECTORY);
+            final var temp = Files.createTempFile(DIRECTORY, "diff", ".tmp");
+            Files.write(temp, compressed);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            if (WRITES.incrementAndGet() % SWEEP_INTERVAL == 0) {
+                sweep();
+            }
+        } catch (IOException exception) {
+            Main.LOGGER.warn("Failed to store diff {}", file, exception);
+        }
+    }
+
+    private static void sweep() throws IOException {
+        final var cutoff = Instant.now().minus(DISK_RETENTION);
+        try (var files = Files.list(DIRECTORY)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private record Key(String repository, String head, String base) {
+        String fileName() {
+            return repository.replace('/', '_') + "-" + head + "-" + base + ".diff.gz";
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package net.neoforged.automation.github;
+
+import net.neoforged.automation.Main;
+import org.jetbrains.annotations.Nullable;
+import org.kohsuke.github.GHEventPayload;
+import org.kohsuke.github.GHLabel;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * An index of the labels that exist in each repository, keyed by the full name of the repository.
+ * <p>
+ * The labels of a repository are listed on first use, kept up to date by {@code label} webhook events, and evicted
+ * once {@value #MAX_REPOSITORIES} more recently used repositories are indexed. Label names are matched
+ * case-insensitively, like GitHub does.
+ */
+public final class LabelIndex {
+    private static final int MAX_REPOSITORIES = 256;
+
+    private static final Map<String, Set<String>> LABELS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+            return size() > MAX_REPOSITORIES;
+        }
+    };
+    // The number of label changes seen in each repository, guarded by the label map. Listing the labels of a
+    // repository compares it before and after to detect changes that the listing may have missed
+    private static final Map<String, Long> GENERATIONS = new HashMap<>();
+
+    /**
+     * {@return whether a label with the given name exists in the repository}
+     */
+    public static boolean exists(GHRepository repository, String name) throws IOException {
+        return labels(repository).contains(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Record that a label was created in the repository.
+     */
+    public static void add(GHRepository repository, String name) {
+        changed(repository.getFullName());
+        var labels = cached(repository.getFullName());
+        if (labels != null) {
+            labels.add(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Update the index from a {@code label} webhook event.
+     */
+    public static void update(GHEventPayload.Label payload) {
+        changed(payload.getRepository().getFullName());
+        var labels = cached(payload.getRepository().getFullName());
+        if (labels == null) return;
+
+        var name = payload.getLabel().getName().toLowerCase(Locale.ROOT);
+        switch (payload.getAction()) {
+            case "created" -> labels.add(name);
+            case "deleted" -> labels.remove(name);
+            // The label may have been renamed, and the payload only carries its old name under the changes
+            default -> invalidate(payload.getRepository().getFullName());
+        }
+    }
+
+    public static void invalidate(String fullName) {
+        synchronized (LABELS) {
+            changed(fullName);
+            LABELS.remove(fullName.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Index the labels of the given repositories in the background.
+     */
+    public static void warm(GitHub gitHub, Collection<String> repositories) {
+        Thread.ofVirtual().name("label-index-warmup").start(() -> {
+            try (var ignored = RequestPriority.BACKGROUND.enter()) {
+                for (var fullName : repositories) {
+                    try {
+                        labels(gitHub.getRepository(fullName));
+                    } catch (IOException exception) {
+                        Main.LOGGER.warn("Failed to index the labels of {}", fullName, exception);
+                    }
+                }
+            }
+        });
+    }
+
+    private static Set<String> labels(GHRepository repository) throws IOException {
+        var key = repository.getFullName().toLowerCase(Locale.ROOT);
+        while (true) {
+            long generation;
+            synchronized (LABELS) {
+                var labels = LABELS.get(key);
+                if (labels != null) return labels;
+                generation = GENERATIONS.getOrDefault(key, 0L);
+            }
+
+            var labels = repository.listLabels().toList().stream()
+                    .map(GHLabel::getName)
+                    .map(name -> name.toLowerCase(Locale.ROOT))
+                    .collect(Collectors.toCollection(ConcurrentHashMap::newKeySet));
+            synchronized (LABELS) {
+                // A label changed while listing, and the listing may predate the change, so list again
+                if (GENERATIONS.getOrDefault(key, 0L) != generation) continue;
+
+                var existing = LABELS.putIfAbsent(key, labels);
+                return existing == null ? labels : existing;
+            }
+        }
+    }
+
+    private static void changed(String fullName) {
+        synchronized (LABELS) {
+            GENERATIONS.merge(fullName.toLowerCase(Locale.ROOT), 1L, Long::sum);
+        }
+    }
+
+    @Nullable
+    private static Set<String> cached(String fullName) {
+        synchronized (LABELS) {
+            return LABELS.get(fullName.toLowerCase(Locale.ROOT));
+        }
+    }
+}
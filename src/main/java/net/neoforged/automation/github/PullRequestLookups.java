@@ -0,0 +1,63 @@
+package net.neoforged.automation.github;
+
+import com.github.api.GetPullRequestQuery;
+import com.github.api.fragment.PullRequestInfo;
+import net.neoforged.automation.util.GraphQlBatcher;
+import net.neoforged.automation.util.SingleFlightCache;
+import org.jetbrains.annotations.Nullable;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Shared lookups of repositories and pull request information, through {@link SingleFlightCache single-flight caches}.
+ * <p>
+ * The handlers of a single event often look up the same pull request at the same moment; these lookups share a single
+ * request, and its result is reused for a few seconds. The head SHA of the pull request is part of the key, so that a
+ * lookup made after a push never observes the previous revision; lookups without a known head SHA are never shared.
+ */
+public final class PullRequestLookups {
+    private static final Duration TTL = Duration.ofSeconds(10);
+
+    private static final SingleFlightCache<RepositoryKey, GHRepository> REPOSITORIES = new SingleFlightCache<>(TTL);
+    private static final SingleFlightCache<PullRequestKey, PullRequestInfo> INFOS = new SingleFlightCache<>(TTL);
+
+    public static GHRepository repository(GitHub gitHub, String fullName) throws IOException {
+        return REPOSITORIES.get(new RepositoryKey(gitHub, fullName.toLowerCase(Locale.ROOT)), () -> gitHub.getRepository(fullName));
+    }
+
+    /**
+     * Query the {@link PullRequestInfo} of a pull request.
+     * <p>
+     * As the mergeability of a pull request also depends on its base, callers interested in the latest mergeability
+     * should query it directly instead.
+     *
+     * @param headSha the SHA of the head of the pull request, if known
+     */
+    public static PullRequestInfo pullRequestInfo(GitHub gitHub, GHRepository repository, int number, @Nullable String headSha) throws IOException {
+        if (headSha == null) return queryInfo(gitHub, repository, number);
+        return INFOS.get(PullRequestKey.of(gitHub, repository.getFullName(), number, headSha), () -> queryInfo(gitHub, repository, number));
+    }
+
+    private static PullRequestInfo queryInfo(GitHub gitHub, GHRepository repository, int number) throws IOException {
+        return GraphQlBatcher.INSTANCE.query(gitHub, GetPullRequestQuery.builder()
+                        .owner(repository.getOwnerName())
+                        .name(repository.getName())
+                        .number(number)
+                        .build())
+                .repository
+                .pullRequest
+                .pullRequestInfo;
+    }
+
+    private record RepositoryKey(GitHub gitHub, String fullName) {}
+
+    private record PullRequestKey(GitHub gitHub, String repository, int number, String headSha) {
+        static PullRequestKey of(GitHub gitHub, String repository, int number, String headSha) {
+            return new PullRequestKey(gitHub, repository.toLowerCase(Locale.ROOT), number, headSha);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package net.neoforged.automation.github;
+
+import net.neoforged.automation.service.MetricsService;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link GitHubConnector} that tracks the rate limit budget of each resource from the {@code X-RateLimit-*}
+ * response headers, and holds back requests according to their {@link RequestPriority}.
+ * <p>
+ * A request waits for the budget to reset when sending it would dig into the reserve its priority leaves to
+ * requests of higher priority. {@link RequestPriority#paced() Paced} requests are additionally spread over the time
+ * left until the reset once half of the budget is used. GraphQL requests are tracked against the {@code graphql}
+ * resource, whose headers count points rather than requests.
+ */
+public final class RateLimitedConnector implements GitHubConnector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitedConnector.class);
+    private static final long MAX_PACING_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private final GitHubConnector delegate;
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    public RateLimitedConnector(GitHubConnector delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+        var budget = budgets.get(resource(request.url()));
+        if (budget != null) {
+            budget.acquire(RequestPriority.current());
+        }
+
+        var response = delegate.send(request);
+
+        var resource = response.header("X-RateLimit-Resource");
+        var remaining = response.header("X-RateLimit-Remaining");
+        if (resource != null && remaining != null) {
+            try {
+                budgets.computeIfAbsent(resource, Budget::new).update(
+                        Long.parseLong(response.header("X-RateLimit-Limit")),
+                        Long.parseLong(remaining),
+                        Long.parseLong(response.header("X-RateLimit-Reset")) * 1000
+                );
+            } catch (NumberFormatException | NullPointerException exception) {
+                LOGGER.warn("Received malformed rate limit headers for resource {}", resource, exception);
+            }
+        }
+        return response;
+    }
+
+    private static String resource(URL url) {
+        var path = url.getPath();
+        if (path.equals("/graphql")) return "graphql";
+        if (path.startsWith("/search/")) return "search";
+        return "core";
+    }
+
+    private static final class Budget {
+        private final String resource;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition replenished = lock.newCondition();
+
+        private volatile long limit, remaining, resetAt;
+
+        private Budget(String resource) {
+            this.resource = resource;
+            MetricsService.gauge("github_ratelimit_remaining{resource=\"" + resource + "\"}", "Remaining GitHub rate limit budget", () -> remaining);
+            MetricsService.gauge("github_ratelimit_limit{resource=\"" + resource + "\"}", "GitHub rate limit budget per window", () -> limit);
+        }
+
+        void update(long limit, long remaining, long resetAt) {
+            lock.lock();
+            try {
+                // Responses to requests sent before a reset may arrive after it, and must not shrink the new budget
+                if (resetAt < this.resetAt) return;
+                this.limit = limit;
+                this.remaining = resetAt > this.resetAt ? remaining : Math.min(remaining, this.remaining);
+                this.resetAt = resetAt;
+                replenished.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void acquire(RequestPriority priority) throws IOException {
+            long pacing = 0;
+            lock.lock();
+            try {
+                boolean logged = false;
+                while (true) {
+                    var now = System.currentTimeMillis();
+                    // The budget was reset, and is unknown until the next response
+                    if (now >= resetAt) return;
+
+                    var reserve = (long) (limit * priority.reserve());
+                    if (remaining > reserve) {
+                        // Count the request now, so that concurrent callers don't all pass on the same budget
+                        remaining--;
+                        if (priority.paced() && remaining < limit / 2) {
+                            pacing = Math.min(MAX_PACING_DELAY, (resetAt - now) / Math.max(remaining - reserve, 1));
+                        }
+                        break;
+                    }
+
+                    if (!logged) {
+                        LOGGER.info("Deferring {} request until the {} rate limit resets in {}s", priority, resource, (resetAt - now) / 1000);
+                        logged = true;
+                    }
+                    replenished.await(resetAt - now, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the " + resource + " rate limit to reset");
+            } finally {
+                lock.unlock();
+            }
+
+            if (pacing > 0) {
+                try {
+                    Thread.sleep(pacing);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while pacing a " + resource + " request");
+                }
+            }
+        }
+    }
+}
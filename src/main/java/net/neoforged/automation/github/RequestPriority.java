@@ -0,0 +1,69 @@
+package net.neoforged.automation.github;
+
+/**
+ * The priority of the GitHub requests made by the current thread, used by the {@link RateLimitedConnector} to decide
+ * which requests may still use the rate limit budget as it shrinks.
+ * <p>
+ * Requests default to {@link #AUTOMATION}. Code paths of another class should {@link #enter() enter} it:
+ * {@snippet :
+ * try (var ignored = RequestPriority.BACKGROUND.enter()) {
+ *     // requests made here are background requests
+ * }
+ * }
+ */
+public enum RequestPriority {
+    /**
+     * Commands a user is waiting on. May use the whole budget.
+     */
+    INTERACTIVE(0, false),
+    /**
+     * Automation reacting to webhook events, such as label actions.
+     */
+    AUTOMATION(0.05, false),
+    /**
+     * Sweeps and rechecks nobody is actively waiting on. These are paced once half of the budget is used.
+     */
+    BACKGROUND(0.25, true);
+
+    private static final ThreadLocal<RequestPriority> CURRENT = ThreadLocal.withInitial(() -> AUTOMATION);
+
+    private final double reserve;
+    private final boolean paced;
+
+    RequestPriority(double reserve, boolean paced) {
+        this.reserve = reserve;
+        this.paced = paced;
+    }
+
+    /**
+     * {@return the fraction of the budget that requests of this priority leave to requests of higher priority}
+     */
+    public double reserve() {
+        return reserve;
+    }
+
+    /**
+     * {@return whether requests of this priority are spread over the time left until the budget resets}
+     */
+    public boolean paced() {
+        return paced;
+    }
+
+    /**
+     * Make this the priority of the requests of the current thread, until the returned scope is closed.
+     */
+    public Scope enter() {
+        var previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> CURRENT.set(previous);
+    }
+
+    public static RequestPriority current() {
+        return CURRENT.get();
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
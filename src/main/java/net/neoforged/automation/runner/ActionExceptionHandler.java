@@ -1,8 +1,13 @@
 package net.neoforged.automation.runner;
 
+import org.jetbrains.annotations.Nullable;
+
 @FunctionalInterface
 public interface ActionExceptionHandler {
-    void accept(ActionRunner runner, String exception) throws Exception;
+    /**
+     * @param runner the runner the job failed on, or {@code null} if no runner connected to run the job
+     */
+    void accept(@Nullable ActionRunner runner, String exception) throws Exception;
 
     default ActionExceptionHandler andThen(ActionExceptionHandler other) {
         return (runner, exception) -> {
@@ -3,52 +3,96 @@ package net.neoforged.automation.runner;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.javalin.util.function.ThrowingRunnable;
+import io.javalin.websocket.WsBinaryMessageContext;
 import io.javalin.websocket.WsCloseStatus;
 import io.javalin.websocket.WsContext;
 import io.javalin.websocket.WsMessageContext;
+import net.neoforged.automation.Configuration;
 import net.neoforged.automation.Main;
 import org.apache.commons.lang3.ArrayUtils;
-import org.eclipse.jgit.util.Base64;
 import org.jetbrains.annotations.Nullable;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GHWorkflowRun;
 import org.kohsuke.github.GitHub;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 public class ActionRunner {
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(2);
+    private static final Map<String, Duration> TIMEOUTS = Map.of(
+            "command", Duration.ofMinutes(60),
+            "restore-cache", Duration.ofMinutes(15),
+            "save-cache", Duration.ofMinutes(15),
+            "read-file", Duration.ofMinutes(10),
+            "write-file", Duration.ofMinutes(10)
+    );
+    /**
+     * The runner pings every 10 seconds, so a connection without any frame for this long belongs to a runner that died.
+     */
+    static final Duration HEARTBEAT_TIMEOUT = Duration.ofSeconds(45);
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    static final int CHUNK_HEADER_SIZE = Long.BYTES + 1;
+    private static final byte FLAG_LAST_CHUNK = 1;
+
     Future<?> execution;
 
     final WsContext context;
+    final RunnerOS os;
+    final Instant connectedAt = Instant.now();
+    volatile Instant idleSince;
+    // Whether the runner never ran a job, and the scope of the job it ran otherwise
+    volatile boolean fresh;
+    @Nullable
+    volatile String scope;
     private final ActionRunnerHandler handler;
 
     private String repository;
     private String userHome;
     private long runId;
 
-    private volatile CompletableFuture<ObjectNode> nextMessage;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Map<Long, CompletableFuture<ObjectNode>> pendingRequests = new ConcurrentHashMap<>();
+    private final Map<Long, OutputStream> downloads = new ConcurrentHashMap<>();
 
-    public ActionRunner(WsContext context, ActionRunnerHandler handler) {
+    public ActionRunner(WsContext context, ActionRunnerHandler handler, RunnerOS os) {
         this.context = context;
         this.handler = handler;
+        this.os = os;
     }
 
     void queue(ExecutorService executor, RunnerAction cons, ActionExceptionHandler onFailure) {
         execution = executor.<Object>submit(() -> {
             try {
-                requestDetails();
+                if (repository == null) {
+                    requestDetails();
+                }
                 cons.run(this);
-                stop();
+                handler.release(this);
             } catch (Exception exception) {
                 Main.LOGGER.error("Action runner failed with exception: ", exception);
                 onFailure.accept(this, exception.getMessage());
@@ -79,9 +123,29 @@ public class ActionRunner {
     }
 
     public void clone(String url, String originName, String ref) {
+        clone(url, originName, ref, Configuration.CloneStrategy.DEFAULT);
+    }
+
+    public void clone(String url, String originName, String ref, Configuration.CloneStrategy strategy) {
         git("remote", "add", originName, url);
-        git("fetch", originName, ref + ":temp");
-        git("fetch", originName, "--tags");
+
+        var fetch = new ArrayList<>(List.of("fetch"));
+        if (strategy.depth() != null) {
+            fetch.add("--depth=" + strategy.depth());
+        }
+        if (strategy.blobless()) {
+            fetch.add("--filter=blob:none");
+        }
+        if (!strategy.tags()) {
+            fetch.add("--no-tags");
+        }
+        fetch.add(originName);
+        fetch.add(ref + ":temp");
+        git(fetch.toArray(String[]::new));
+
+        if (strategy.tags()) {
+            git("fetch", originName, "--tags");
+        }
         git("checkout", "temp");
     }
 
@@ -95,22 +159,55 @@ public class ActionRunner {
     }
 
     public void writeFile(String path, String content) {
-        sendAndExpect("write-file", node -> {
-            node.put("path", path);
-            node.put("content", content);
-        });
+        try {
+            writeFile(path, new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
     }
 
-    public byte @Nullable [] readFile(String path) {
-        var json = sendAndExpect("read-file", node -> {
+    /**
+     * Write the given content to a file on the runner. The content is streamed in binary chunks and is never buffered whole.
+     */
+    public void writeFile(String path, InputStream content) throws IOException {
+        var id = nextRequestId.incrementAndGet();
+        var response = request(id, "write-file", node -> {
             node.put("path", path);
+            node.put("binary", true);
         });
 
-        if (json.has("file")) {
-            return Base64.decode(json.get("file").asText());
+        var buffer = new byte[CHUNK_SIZE];
+        int read;
+        while ((read = content.readNBytes(buffer, 0, buffer.length)) == buffer.length) {
+            sendChunk(id, buffer, read, false);
         }
+        sendChunk(id, buffer, read, true);
 
-        return null;
+        await("write-file", response);
+    }
+
+    public byte @Nullable [] readFile(String path) {
+        var out = new ByteArrayOutputStream();
+        return readFile(path, out) ? out.toByteArray() : null;
+    }
+
+    /**
+     * Read a file from the runner, streaming its content to the given output as it arrives.
+     *
+     * @return {@code false} if the file could not be read
+     */
+    public boolean readFile(String path, OutputStream out) {
+        var id = nextRequestId.incrementAndGet();
+        downloads.put(id, out);
+        try {
+            var json = await("read-file", request(id, "read-file", node -> {
+                node.put("path", path);
+                node.put("binary", true);
+            }));
+            return !json.has("error");
+        } finally {
+            downloads.remove(id);
+        }
     }
 
     @Nullable
@@ -241,7 +338,7 @@ public class ActionRunner {
     }
 
     public void log(String message) {
-        sendAndExpect("log", n -> n.put("message", message));
+        post("log", n -> n.put("message", message));
     }
 
     public <E extends Exception> void group(String title, ThrowingRunnable<E> toRun) throws E {
@@ -254,11 +351,18 @@ public class ActionRunner {
     }
 
     public void pushGroup(String title) {
-        sendAndExpect("group", o -> o.put("title", title));
+        post("group", o -> o.put("title", title));
     }
 
     public void popGroup() {
-        sendAndExpect("group");
+        post("group", o -> {});
+    }
+
+    /**
+     * Reset the runner between jobs, clearing its workspace and the environment variables set by the previous job.
+     */
+    void reset() {
+        sendAndExpect("reset");
     }
 
     public void stop() {
@@ -271,19 +375,128 @@ public class ActionRunner {
     }
 
     private ObjectNode sendAndExpect(String type, Consumer<ObjectNode> cons) {
+        return await(type, request(type, cons));
+    }
+
+    /**
+     * Send a request to the runner. The request is tagged with an id which the runner echoes in its response, so
+     * that any number of requests may be in flight at once.
+     */
+    private CompletableFuture<ObjectNode> request(String type, Consumer<ObjectNode> cons) {
+        return request(nextRequestId.incrementAndGet(), type, cons);
+    }
+
+    private CompletableFuture<ObjectNode> request(long id, String type, Consumer<ObjectNode> cons) {
         var future = new CompletableFuture<ObjectNode>();
-        this.nextMessage = future;
+        pendingRequests.put(id, future);
+        // However the request ends, including being abandoned by a waiter, it no longer awaits a response
+        future.whenComplete((response, exception) -> pendingRequests.remove(id, future));
+
+        var node = Main.JSON.createObjectNode();
+        node.put("type", type);
+        node.put("requestId", id);
+        cons.accept(node);
+        try {
+            context.send(node.toString());
+        } catch (RuntimeException exception) {
+            pendingRequests.remove(id);
+            future.completeExceptionally(exception);
+        }
+        return future;
+    }
+
+    /**
+     * Send a message the runner does not respond to.
+     */
+    private void post(String type, Consumer<ObjectNode> cons) {
         var node = Main.JSON.createObjectNode();
         node.put("type", type);
         cons.accept(node);
-        context.send(node.toPrettyString());
-        return future.join();
+        context.send(node.toString());
+    }
+
+    /**
+     * Wait for the response to a request, failing if the runner does not answer within the deadline of the request type
+     * or if the waiting thread is interrupted.
+     */
+    private <T> T await(String type, CompletableFuture<T> future) {
+        var timeout = TIMEOUTS.getOrDefault(type, DEFAULT_TIMEOUT);
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException re) throw re;
+            throw new CompletionException(exception.getCause());
+        } catch (TimeoutException exception) {
+            var timedOut = new RequestTimeoutException("Runner did not respond to " + type + " request within " + timeout);
+            future.completeExceptionally(timedOut);
+            throw timedOut;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            var cancelled = new CancellationException("Interrupted while waiting for the runner to respond to " + type + " request");
+            future.completeExceptionally(cancelled);
+            throw cancelled;
+        }
     }
 
     public void acceptMessage(WsMessageContext context) throws JsonProcessingException {
-        if (nextMessage != null) {
-            nextMessage.complete(Main.JSON.readValue(context.message(), ObjectNode.class));
-            nextMessage = null;
+        var node = Main.JSON.readValue(context.message(), ObjectNode.class);
+        var requestId = node.get("requestId");
+        var future = requestId == null ? null : pendingRequests.remove(requestId.asLong());
+        if (future == null) {
+            Main.LOGGER.warn("Received a message from action runner {} that does not answer any request", this.context.pathParam("id"));
+            return;
+        }
+
+        if (node.has("failure")) {
+            future.completeExceptionally(new ExecutionException("Runner failed to handle request: " + node.get("failure").asText()));
+        } else {
+            future.complete(node);
+        }
+    }
+
+    /**
+     * Send a chunk of a file transfer. Chunks are binary frames made of the id of the request that started the transfer,
+     * a flags byte and the content.
+     */
+    private void sendChunk(long transferId, byte[] content, int length, boolean last) {
+        var frame = ByteBuffer.allocate(CHUNK_HEADER_SIZE + length)
+                .putLong(transferId)
+                .put(last ? FLAG_LAST_CHUNK : 0)
+                .put(content, 0, length)
+                .flip();
+        context.send(frame);
+    }
+
+    public void acceptChunk(WsBinaryMessageContext context) {
+        var frame = ByteBuffer.wrap(context.data(), context.offset(), context.length());
+        var transferId = frame.getLong();
+        frame.get(); // Flags, the transfer ends with the response to the read request instead
+        var out = downloads.get(transferId);
+        if (out == null) {
+            Main.LOGGER.warn("Received content from action runner {} for unknown transfer {}", this.context.pathParam("id"), transferId);
+            return;
+        }
+
+        try {
+            out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+        } catch (IOException exception) {
+            downloads.remove(transferId);
+            var future = pendingRequests.remove(transferId);
+            if (future != null) {
+                future.completeExceptionally(new UncheckedIOException(exception));
+            }
+        }
+    }
+
+    /**
+     * Fail the requests still waiting for a response, once the connection to the runner is closed.
+     */
+    void failPendingRequests() {
+        for (var id : List.copyOf(pendingRequests.keySet())) {
+            var future = pendingRequests.remove(id);
+            if (future != null) {
+                future.completeExceptionally(new IllegalStateException("Connection to the runner was closed"));
+            }
         }
     }
 
@@ -345,4 +558,10 @@ public class ActionRunner {
             super(msg);
         }
     }
+
+    public static class RequestTimeoutException extends RuntimeException {
+        private RequestTimeoutException(String msg) {
+            super(msg);
+        }
+    }
 }
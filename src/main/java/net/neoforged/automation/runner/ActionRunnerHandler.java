@@ -2,33 +2,105 @@ package net.neoforged.automation.runner;
 
 import io.javalin.websocket.WsConfig;
 import net.neoforged.automation.Configuration;
+import net.neoforged.automation.Main;
+import net.neoforged.automation.service.MetricsService;
+import org.jetbrains.annotations.Nullable;
+import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GitHub;
 
 import java.io.IOException;
 import java.time.Duration;
-import java.util.HashMap;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public final class ActionRunnerHandler implements Consumer<WsConfig> {
-    private record PendingConfiguration(RunnerAction runner, ActionExceptionHandler failure) {}
-    private final Map<String, PendingConfiguration> pending = new HashMap<>();
-    private final Map<String, ActionRunner> running = new HashMap<>();
+    private record PendingConfiguration(RunnerOS os, String name, @Nullable String scope, RunnerAction runner, ActionExceptionHandler failure, boolean warm, Instant dispatchedAt) {}
+    private final Map<String, PendingConfiguration> pending = new ConcurrentHashMap<>();
+    private final Map<String, ActionRunner> running = new ConcurrentHashMap<>();
     private final String wsBaseUrl;
     private final ExecutorService executor;
+    private Duration dispatchTimeout = Duration.ofMinutes(15);
+
+    private final MetricsService.Timer connectTime = MetricsService.timer("action_runner_connect_seconds", "Time between dispatching a runner workflow and the runner connecting");
+
+    // Idle runners and the number of runners being started to join them, guarded by the idle map
+    private final Map<RunnerOS, Deque<ActionRunner>> idle = new EnumMap<>(RunnerOS.class);
+    private final Map<RunnerOS, Integer> warming = new EnumMap<>(RunnerOS.class);
+    private int poolSize;
+    private Duration idleTimeout;
+    private Duration maxLifetime;
 
     public ActionRunnerHandler(String wsBaseUrl, ExecutorService executor) {
         this.wsBaseUrl = wsBaseUrl;
         this.executor = executor;
+
+        MetricsService.gauge("action_runners_pending", "Number of dispatched runners that have not connected yet", pending::size);
+        MetricsService.gauge("action_runners_running", "Number of connected runners", running::size);
+        MetricsService.gauge("action_runners_idle", "Number of connected runners waiting for a job", () -> {
+            synchronized (idle) {
+                return idle.values().stream().mapToInt(Deque::size).sum();
+            }
+        });
+        Main.EXECUTOR.scheduleWithFixedDelay(this::expirePending, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Set how long a dispatched runner has to connect before its job is failed.
+     */
+    public ActionRunnerHandler dispatchTimeout(Duration dispatchTimeout) {
+        this.dispatchTimeout = dispatchTimeout;
+        return this;
     }
 
     public Builder builder(GitHub gitHub, Configuration.PRActions config) {
         return new Builder(gitHub, config);
     }
 
-    public void queue(GitHub gitHub, Configuration.PRActions config, RunnerOS os, String name, RunnerAction consumer, ActionExceptionHandler failure) throws IOException {
+    /**
+     * Keep up to {@code size} connected runners of each OS around once they finish a job, so that successive jobs
+     * can skip dispatching a workflow and waiting for the runner to start.
+     * <p>
+     * Jobs run the build code of pull requests, so a runner that ran a job is only given later jobs of the same
+     * {@link Builder#scope(GHPullRequest) scope}. Only runners that never ran a job are shared between scopes, and
+     * up to {@code size} of each kind are kept.
+     *
+     * @param idleTimeout how long a runner may wait for a job before being stopped
+     * @param maxLifetime how long a runner may be connected before it is no longer given jobs
+     */
+    public ActionRunnerHandler pool(int size, Duration idleTimeout, Duration maxLifetime) {
+        this.poolSize = size;
+        this.idleTimeout = idleTimeout;
+        this.maxLifetime = maxLifetime;
+        if (size > 0) {
+            Main.EXECUTOR.scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+        }
+        return this;
+    }
+
+    public void queue(GitHub gitHub, Configuration.PRActions config, RunnerOS os, String name, @Nullable String scope, RunnerAction consumer, ActionExceptionHandler failure) throws IOException {
+        var runner = takeIdle(os, scope);
+        if (runner != null) {
+            Main.LOGGER.info("Running job '{}' on idle runner {}", name, runner.context.pathParam("id"));
+            runner.fresh = false;
+            runner.scope = scope;
+            runner.queue(executor, consumer, failure);
+        } else {
+            dispatch(gitHub, config, os, name, new PendingConfiguration(os, name, scope, consumer, failure, false, Instant.now()));
+        }
+        replenish(gitHub, config, os);
+    }
+
+    private void dispatch(GitHub gitHub, Configuration.PRActions config, RunnerOS os, String name, PendingConfiguration configuration) throws IOException {
         var id = UUID.randomUUID().toString();
         var repo = gitHub.getRepository(config.repository());
         var spl = config.workflow().split("@");
@@ -38,11 +110,147 @@ public final class ActionRunnerHandler implements Consumer<WsConfig> {
                         "os", os.latest,
                         "name", name
                 ));
-        this.pending.put(id, new PendingConfiguration(consumer, failure));
+        this.pending.put(id, configuration);
+    }
+
+    /**
+     * Called once a runner has finished its job. The runner is returned to the pool if it never ran a job or its job
+     * had a scope, there is room left and it has not outlived its maximum lifetime, otherwise it is stopped.
+     */
+    void release(ActionRunner runner) {
+        if (poolSize <= 0 || (!runner.fresh && runner.scope == null) || !runner.context.session.isOpen() || !runner.connectedAt.plus(maxLifetime).isAfter(Instant.now()) || idleCount(runner.os, runner.fresh) >= poolSize) {
+            runner.stop();
+            return;
+        }
+
+        try {
+            runner.reset();
+        } catch (RuntimeException exception) {
+            Main.LOGGER.warn("Failed to reset action runner {}, stopping it: ", runner.context.pathParam("id"), exception);
+            runner.stop();
+            return;
+        }
+
+        synchronized (idle) {
+            var runners = idle.computeIfAbsent(runner.os, k -> new ArrayDeque<>());
+            if (idleCount(runner.os, runner.fresh) < poolSize) {
+                runner.idleSince = Instant.now();
+                runners.push(runner);
+                return;
+            }
+        }
+        runner.stop();
+    }
+
+    /**
+     * Take an idle runner that is either fresh or last ran a job of the given scope.
+     */
+    @Nullable
+    private ActionRunner takeIdle(RunnerOS os, @Nullable String scope) {
+        if (poolSize <= 0) return null;
+        while (true) {
+            ActionRunner runner = null;
+            synchronized (idle) {
+                var runners = idle.get(os);
+                if (runners != null) {
+                    var iterator = runners.iterator();
+                    while (iterator.hasNext()) {
+                        var candidate = iterator.next();
+                        if (candidate.fresh || (scope != null && scope.equals(candidate.scope))) {
+                            iterator.remove();
+                            runner = candidate;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (runner == null) return null;
+            if (runner.context.session.isOpen() && runner.connectedAt.plus(maxLifetime).isAfter(Instant.now())) {
+                return runner;
+            }
+            runner.stop();
+        }
+    }
+
+    private int idleCount(RunnerOS os, boolean fresh) {
+        synchronized (idle) {
+            var runners = idle.get(os);
+            return runners == null ? 0 : (int) runners.stream().filter(runner -> runner.fresh == fresh).count();
+        }
+    }
+
+    /**
+     * Start a new runner to join the pool if the fresh runners of the pool and the runners already starting are not
+     * enough to fill it. Runners that already ran a job do not count, as they can only serve their own scope.
+     * <p>
+     * The job that triggered the replenishment has already been handed out, so failures are only logged.
+     */
+    private void replenish(GitHub gitHub, Configuration.PRActions config, RunnerOS os) {
+        if (poolSize <= 0) return;
+        synchronized (idle) {
+            if (idleCount(os, true) + warming.getOrDefault(os, 0) >= poolSize) return;
+            warming.merge(os, 1, Integer::sum);
+        }
+        try {
+            dispatch(gitHub, config, os, "Idle runner", new PendingConfiguration(os, "Idle runner", null, runner -> {}, (runner, exception) -> {}, true, Instant.now()));
+        } catch (IOException | RuntimeException exception) {
+            synchronized (idle) {
+                warming.merge(os, -1, Integer::sum);
+            }
+            Main.LOGGER.error("Failed to dispatch an idle action runner: ", exception);
+        }
+    }
+
+    /**
+     * Fail the jobs whose runner did not connect within the dispatch timeout.
+     */
+    private void expirePending() {
+        var deadline = Instant.now().minus(dispatchTimeout);
+        pending.forEach((id, configuration) -> {
+            if (configuration.dispatchedAt.isBefore(deadline) && pending.remove(id, configuration)) {
+                Main.LOGGER.warn("Action runner {} for job '{}' did not connect within {}", id, configuration.name, dispatchTimeout);
+                if (configuration.warm) {
+                    synchronized (idle) {
+                        warming.merge(configuration.os, -1, Integer::sum);
+                    }
+                }
+                executor.execute(() -> {
+                    try {
+                        configuration.failure.accept(null, "Runner did not connect within " + dispatchTimeout.toMinutes() + " minutes");
+                    } catch (Exception exception) {
+                        Main.LOGGER.error("Failed to handle action runner dispatch timeout: ", exception);
+                    }
+                });
+            }
+        });
+    }
+
+    private void evictIdle() {
+        var now = Instant.now();
+        var evicted = new ArrayList<ActionRunner>();
+        synchronized (idle) {
+            for (var runners : idle.values()) {
+                runners.removeIf(runner -> {
+                    if (runner.idleSince.plus(idleTimeout).isBefore(now) || runner.connectedAt.plus(maxLifetime).isBefore(now)) {
+                        evicted.add(runner);
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        }
+        evicted.forEach(ActionRunner::stop);
     }
 
     public void close(ActionRunner runner, boolean forceShutdown) {
         running.remove(runner.context.pathParam("id"));
+        synchronized (idle) {
+            var runners = idle.get(runner.os);
+            if (runners != null) {
+                runners.remove(runner);
+            }
+        }
+        runner.failPendingRequests();
         if (forceShutdown && runner.execution != null && !runner.execution.isDone()) {
             runner.execution.cancel(true);
         }
@@ -59,8 +267,20 @@ public final class ActionRunnerHandler implements Consumer<WsConfig> {
             }
 
             wsConnectContext.session.setMaxTextMessageSize(65536 * 10);
+            wsConnectContext.session.setMaxBinaryMessageSize(ActionRunner.CHUNK_SIZE + ActionRunner.CHUNK_HEADER_SIZE);
+            // Any frame, including the heartbeat pings of the runner, resets the idle timer
+            wsConnectContext.session.setIdleTimeout(ActionRunner.HEARTBEAT_TIMEOUT);
+
+            connectTime.record(Duration.between(cons.dispatchedAt, Instant.now()));
+            if (cons.warm) {
+                synchronized (idle) {
+                    warming.merge(cons.os, -1, Integer::sum);
+                }
+            }
 
-            var runner = new ActionRunner(wsConnectContext, this);
+            var runner = new ActionRunner(wsConnectContext, this, cons.os);
+            runner.fresh = cons.warm;
+            runner.scope = cons.scope;
             running.put(id, runner);
             runner.queue(executor, cons.runner, cons.failure);
         });
@@ -75,6 +295,16 @@ public final class ActionRunnerHandler implements Consumer<WsConfig> {
             runner.acceptMessage(wsMessageContext);
         });
 
+        wsConfig.onBinaryMessage(wsMessageContext -> {
+            var id = wsMessageContext.pathParam("id");
+            var runner = running.get(id);
+            if (runner == null) {
+                wsMessageContext.closeSession();
+                return;
+            }
+            runner.acceptChunk(wsMessageContext);
+        });
+
         wsConfig.onClose(ctx -> {
             var id = ctx.pathParam("id");
             var runner = running.get(id);
@@ -89,6 +319,8 @@ public final class ActionRunnerHandler implements Consumer<WsConfig> {
         private final Configuration.PRActions config;
         private RunnerOS os = RunnerOS.UBUNTU;
         private String name = "Run";
+        @Nullable
+        private String scope;
 
         private RunnerAction runner;
         private ActionExceptionHandler onFailure;
@@ -108,6 +340,15 @@ public final class ActionRunnerHandler implements Consumer<WsConfig> {
             return this;
         }
 
+        /**
+         * Allow the runner to be reused for later jobs of the given pull request. Jobs without a scope never give
+         * their runner back to the pool.
+         */
+        public Builder scope(GHPullRequest pr) {
+            this.scope = pr.getRepository().getFullName().toLowerCase(Locale.ROOT) + "#" + pr.getNumber();
+            return this;
+        }
+
         public Builder run(RunnerAction cons) {
             if (this.runner != null) {
                 this.runner = runner.andThen(cons);
@@ -127,7 +368,7 @@ public final class ActionRunnerHandler implements Consumer<WsConfig> {
         }
 
         public void queue() throws IOException {
-            ActionRunnerHandler.this.queue(gitHub, config, os, name, runner, onFailure);
+            ActionRunnerHandler.this.queue(gitHub, config, os, name, scope, runner, onFailure);
         }
     }
 }
@@ -2,57 +2,101 @@ package net.neoforged.automation.runner;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.PatchApplyException;
+import org.eclipse.jgit.lib.CommitBuilder;
 import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.patch.PatchApplier;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
-import org.eclipse.jgit.util.FileUtils;
+import org.jetbrains.annotations.Nullable;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubAccessor;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Random;
 
 public class GitRunner {
-    private static final Random RANDOM = new Random();
-
     public static void setupPR(GitHub gitHub, GHPullRequest pr, GitConsumer consumer) throws IOException, GitAPIException {
-        var repo = Path.of("checkout/prs/" + pr.getRepository().getFullName() + "/pr" + pr.getNumber() + "/" + nextInt());
-        setupRepo(repo, gitHub, pr.getHead().getRepository(), pr.getHead().getRef(), consumer);
+        // The head commit is fetched through the pull ref of the base repository so that forks share its mirror
+        setupRepo("prs/" + pr.getRepository().getFullName() + "/pr" + pr.getNumber(), gitHub, pr.getRepository(), "refs/pull/" + pr.getNumber() + "/head", pr.getHead().getRepository(), pr.getHead().getRef(), consumer);
     }
 
     public static void setupRepo(GitHub gitHub, GHRepository repo, String head, GitConsumer consumer) throws IOException, GitAPIException {
-        var path = Path.of("checkout/repos/" + repo.getFullName() + "/" + nextInt());
-        setupRepo(path, gitHub, repo, head, consumer);
+        setupRepo("repos/" + repo.getFullName(), gitHub, repo, "refs/heads/" + head, repo, head, consumer);
+    }
+
+    private static void setupRepo(String workspace, GitHub gitHub, GHRepository source, String sourceRef, GHRepository origin, String branch, GitConsumer consumer) throws IOException, GitAPIException {
+        try (var mirror = RepositoryMirror.acquire(source.getFullName());
+             var lease = Workspaces.lease(workspace)) {
+            var commit = RepositoryMirror.fetch(source.getFullName(), sourceRef);
+            try (var git = RepositoryMirror.checkout(source.getFullName(), lease.path(), commit, "https://github.com/" + origin.getFullName() + ".git", branch)) {
+                consumer.run(lease.path(), git, credentials(gitHub));
+            }
+        }
+    }
+
+    /**
+     * Apply the patch on top of the head of the PR and push the resulting commit to the PR branch.
+     */
+    public static void pushPatch(GitHub gitHub, GHPullRequest pr, byte[] patch, String message, @Nullable PersonIdent committer) throws IOException, GitAPIException {
+        pushPatch(gitHub, pr.getRepository(), "refs/pull/" + pr.getNumber() + "/head", pr.getHead().getRepository(), pr.getHead().getRef(), patch, message, committer, false);
     }
 
-    public static void setupRepo(Path path, GitHub gitHub, GHRepository repo, String head, GitConsumer consumer) throws IOException, GitAPIException {
-        Files.createDirectories(path);
-        try (var git = Git.cloneRepository()
-                .setURI("https://github.com/" + repo.getFullName() + ".git")
-                .setBranch("refs/heads/" + head)
-                .setDirectory(path.toFile()).call()) {
-            var botName = GitHubAccessor.getApp(gitHub).getSlug() + "[bot]";
-            var user = gitHub.getUser(botName);
-            var creds = new BotCredentialsProvider(
-                    botName,
-                    GitHubAccessor.getToken(gitHub),
-                    user
-            );
-
-            consumer.run(path, git, creds);
-
-            git.getRepository().close();
+    /**
+     * Apply the patch on top of {@code sourceRef} of the {@code source} repository and push the resulting commit to the {@code branch} of the {@code target} repository.
+     * <p>
+     * The new tree is built from the tree of the base commit directly in the object store of the mirror, so no working tree is checked out
+     * and only the blobs touched by the patch are hashed.
+     *
+     * @param committer the author and committer of the commit, or {@code null} to use the bot
+     */
+    public static void pushPatch(GitHub gitHub, GHRepository source, String sourceRef, GHRepository target, String branch, byte[] patch, String message, @Nullable PersonIdent committer, boolean force) throws IOException, GitAPIException {
+        var creds = credentials(gitHub);
+        try (var mirror = RepositoryMirror.acquire(source.getFullName())) {
+            pushPatch(source, sourceRef, target, branch, patch, message, committer == null ? creds.getPerson() : committer, force, creds);
         }
+    }
+
+    private static void pushPatch(GHRepository source, String sourceRef, GHRepository target, String branch, byte[] patch, String message, PersonIdent ident, boolean force, BotCredentialsProvider creds) throws IOException, GitAPIException {
+        var base = RepositoryMirror.fetch(source.getFullName(), sourceRef);
+        try (var repo = RepositoryMirror.open(source.getFullName());
+             var inserter = repo.newObjectInserter();
+             var walk = new RevWalk(repo)) {
+            var parent = walk.parseCommit(base);
+            var result = new PatchApplier(repo, parent.getTree(), inserter).applyPatch(new ByteArrayInputStream(patch));
+            if (!result.getErrors().isEmpty()) {
+                throw new PatchApplyException("Failed to apply patch: " + result.getErrors());
+            }
 
-        FileUtils.delete(path.toFile(), FileUtils.RECURSIVE);
+            var commit = new CommitBuilder();
+            commit.setTreeId(result.getTreeId());
+            commit.setParentId(parent);
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage(message);
+            var commitId = inserter.insert(commit);
+            inserter.flush();
+
+            Git.wrap(repo).push()
+                    .setRemote("https://github.com/" + target.getFullName() + ".git")
+                    .setRefSpecs(new RefSpec(commitId.name() + ":refs/heads/" + branch).setForceUpdate(force))
+                    .setCredentialsProvider(creds)
+                    .call();
+        }
     }
 
-    private static synchronized int nextInt() {
-        return RANDOM.nextInt(10000);
+    private static BotCredentialsProvider credentials(GitHub gitHub) throws IOException {
+        var botName = GitHubAccessor.getApp(gitHub).getSlug() + "[bot]";
+        return new BotCredentialsProvider(
+                botName,
+                GitHubAccessor.getToken(gitHub),
+                gitHub.getUser(botName)
+        );
     }
 
     @FunctionalInterface
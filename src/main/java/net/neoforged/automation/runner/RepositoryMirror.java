@@ -0,0 +1,241 @@
+package net.neoforged.automation.runner;
+
+import net.neoforged.automation.Main;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.RefSpec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Local bare mirrors of GitHub repositories. Checkouts borrow the objects of the mirror through
+ * {@code objects/info/alternates} so that only the objects missing from the mirror are ever downloaded.
+ */
+public class RepositoryMirror {
+    private static final Path ROOT = Workspaces.ROOT.resolve("mirrors");
+    private static final Map<String, Mirror> MIRRORS = new ConcurrentHashMap<>();
+
+    private static final class Mirror {
+        final ReentrantLock lock = new ReentrantLock();
+        int users;
+        volatile long lastUsed;
+
+        Mirror(long lastUsed) {
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * Mark the mirror of the repository as in use until the returned handle is closed, preventing it from being reclaimed.
+     */
+    public static Usage acquire(String fullName) {
+        var mirror = mirror(fullName);
+        mirror.lock.lock();
+        try {
+            mirror.users++;
+            mirror.lastUsed = System.currentTimeMillis();
+        } finally {
+            mirror.lock.unlock();
+        }
+        return () -> {
+            mirror.lock.lock();
+            try {
+                mirror.users--;
+            } finally {
+                mirror.lock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Fetch the given ref of the repository into its mirror, creating the mirror if needed.
+     *
+     * @return the commit the ref points to
+     */
+    public static ObjectId fetch(String fullName, String ref) throws IOException, GitAPIException {
+        var dir = directory(fullName);
+        var lock = mirror(fullName).lock;
+        lock.lock();
+        try {
+            if (!Files.exists(dir.resolve("HEAD"))) {
+                Files.createDirectories(dir);
+                try (var git = Git.init().setBare(true).setDirectory(dir.toFile()).call()) {
+                    var config = git.getRepository().getConfig();
+                    config.setString("remote", "origin", "url", "https://github.com/" + fullName + ".git");
+                    // Checkouts borrow objects from the mirror, so it must never prune them
+                    config.setInt("gc", null, "auto", 0);
+                    config.save();
+                }
+            }
+
+            try (var git = Git.open(dir.toFile())) {
+                git.fetch()
+                        .setRemote("origin")
+                        .setRefSpecs(new RefSpec("+" + ref + ":" + ref))
+                        .call();
+
+                var commit = git.getRepository().resolve(ref);
+                if (commit == null) {
+                    throw new IOException("Ref " + ref + " does not exist in " + fullName);
+                }
+                return commit;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Create a working copy at the given path, with the given branch checked out at the commit and tracking the branch of the same name of the origin.
+     * <p>
+     * The objects of the working copy are borrowed from the mirror of the repository, which must have been {@link #fetch(String, String) fetched} before.
+     */
+    public static Git checkout(String fullName, Path path, ObjectId commit, String originUrl, String branch) throws IOException, GitAPIException {
+        Files.createDirectories(path);
+        Git.init().setDirectory(path.toFile()).setInitialBranch(branch).call().close();
+
+        var objectInfo = Files.createDirectories(path.resolve(".git/objects/info"));
+        Files.writeString(objectInfo.resolve("alternates"), directory(fullName).resolve("objects").toAbsolutePath() + "\n");
+
+        // Reopen the repository so that the alternates are picked up
+        var git = Git.open(path.toFile());
+        var repo = git.getRepository();
+        var config = repo.getConfig();
+        config.setString("remote", "origin", "url", originUrl);
+        config.setString("remote", "origin", "fetch", "+refs/heads/*:refs/remotes/origin/*");
+        config.setString("branch", branch, "remote", "origin");
+        config.setString("branch", branch, "merge", "refs/heads/" + branch);
+        config.save();
+
+        updateRef(repo, "refs/heads/" + branch, commit);
+        updateRef(repo, "refs/remotes/origin/" + branch, commit);
+        git.reset().setMode(ResetCommand.ResetType.HARD).call();
+        return git;
+    }
+
+    /**
+     * Open the mirror of the repository. Objects may be inserted into it directly to build commits without a working tree.
+     */
+    public static Repository open(String fullName) throws IOException {
+        return FileRepositoryBuilder.create(directory(fullName).toFile());
+    }
+
+    /**
+     * Delete the least recently used mirrors which are not in use until at least the given amount of bytes is freed.
+     *
+     * @return the amount of bytes freed
+     */
+    static long reclaim(long bytes) throws IOException {
+        var candidates = list();
+        candidates.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+
+        long freed = 0;
+        for (var candidate : candidates) {
+            if (freed >= bytes) break;
+            var mirror = candidate.getValue();
+            if (!mirror.lock.tryLock()) continue;
+            try {
+                if (mirror.users > 0) continue;
+                var dir = directory(candidate.getKey());
+                var size = size(dir);
+                Workspaces.delete(dir);
+                freed += size;
+            } finally {
+                mirror.lock.unlock();
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Repack the mirrors which are not in use. Every fetch adds a pack and building commits adds loose objects,
+     * so mirrors slow down over time unless repacked.
+     * <p>
+     * Unreferenced objects are kept, as the checkouts borrowing objects from a mirror may still need them.
+     */
+    static void collectGarbage() throws IOException {
+        for (var candidate : list()) {
+            var mirror = candidate.getValue();
+            if (!mirror.lock.tryLock()) continue;
+            try {
+                if (mirror.users > 0) continue;
+                try (var git = Git.open(directory(candidate.getKey()).toFile())) {
+                    // Objects modified after the expiry are never pruned, and every object was modified after the epoch
+                    git.gc().setExpire(Instant.EPOCH).call();
+                } catch (IOException | GitAPIException exception) {
+                    Main.LOGGER.error("Failed to collect garbage of mirror {}: ", candidate.getKey(), exception);
+                }
+            } finally {
+                mirror.lock.unlock();
+            }
+        }
+    }
+
+    private static List<Map.Entry<String, Mirror>> list() throws IOException {
+        var mirrors = new ArrayList<Map.Entry<String, Mirror>>();
+        if (Files.isDirectory(ROOT)) {
+            try (var owners = Files.list(ROOT)) {
+                for (var owner : (Iterable<Path>) owners::iterator) {
+                    try (var repos = Files.list(owner)) {
+                        for (var repo : (Iterable<Path>) repos::iterator) {
+                            var name = repo.getFileName().toString();
+                            if (!name.endsWith(".git")) continue;
+                            var fullName = owner.getFileName() + "/" + name.substring(0, name.length() - 4);
+                            mirrors.add(Map.entry(fullName, mirror(fullName)));
+                        }
+                    }
+                }
+            }
+        }
+        return mirrors;
+    }
+
+    static long size(Path path) throws IOException {
+        if (!Files.exists(path)) return 0;
+        try (var files = Files.walk(path)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static Mirror mirror(String fullName) {
+        return MIRRORS.computeIfAbsent(fullName.toLowerCase(Locale.ROOT), k -> {
+            var dir = directory(k).toFile();
+            return new Mirror(dir.exists() ? dir.lastModified() : System.currentTimeMillis());
+        });
+    }
+
+    private static void updateRef(Repository repo, String name, ObjectId commit) throws IOException {
+        var update = repo.updateRef(name);
+        update.setNewObjectId(commit);
+        update.setForceUpdate(true);
+        var result = update.update();
+        if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FORCED && result != RefUpdate.Result.NO_CHANGE) {
+            throw new IOException("Failed to update " + name + ": " + result);
+        }
+    }
+
+    private static Path directory(String fullName) {
+        return ROOT.resolve(fullName.toLowerCase(Locale.ROOT) + ".git");
+    }
+
+    @FunctionalInterface
+    public interface Usage extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,89 @@
+package net.neoforged.automation.runner;
+
+import net.neoforged.automation.Main;
+import net.neoforged.automation.service.MetricsService;
+import org.eclipse.jgit.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out the directories local git operations work in, and keeps the disk usage of the checkout directory,
+ * including the {@link RepositoryMirror repository mirrors}, under a quota.
+ */
+public final class Workspaces {
+    static final Path ROOT = Path.of("checkout");
+    private static final Path WORK = ROOT.resolve("work");
+    // Walking the checkout directory can take a while, so it must not hold up the tasks of the shared scheduler
+    private static final ScheduledExecutorService RECLAIMER = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("checkout-reclaim").daemon().factory());
+
+    private static volatile long quota;
+    private static volatile long usage;
+
+    /**
+     * Remove the workspaces left behind by a previous run and start enforcing the quota.
+     *
+     * @param quota the maximum size of the checkout directory in bytes, or {@code 0} for no limit
+     */
+    public static void init(long quota) throws IOException {
+        Workspaces.quota = quota;
+
+        // No lease survives a restart, so everything but the mirrors is an orphan
+        for (var orphan : List.of(WORK, ROOT.resolve("prs"), ROOT.resolve("repos"))) {
+            delete(orphan);
+        }
+
+        MetricsService.gauge("checkout_disk_usage_bytes", "Disk space used by repository mirrors and workspaces", () -> usage);
+        RECLAIMER.scheduleWithFixedDelay(Workspaces::reclaim, 0, 5, TimeUnit.MINUTES);
+        RECLAIMER.scheduleWithFixedDelay(Workspaces::collectGarbage, 1, 24, TimeUnit.HOURS);
+    }
+
+    /**
+     * Lease a new, empty directory. The directory is deleted when the lease is closed.
+     *
+     * @param name a name describing the operation, used to group the directories
+     */
+    public static Lease lease(String name) throws IOException {
+        var path = WORK.resolve(name).resolve(UUID.randomUUID().toString());
+        Files.createDirectories(path);
+        return new Lease(path);
+    }
+
+    private static void reclaim() {
+        try {
+            usage = RepositoryMirror.size(ROOT);
+            if (quota > 0 && usage > quota) {
+                var freed = RepositoryMirror.reclaim(usage - quota);
+                usage -= freed;
+                Main.LOGGER.info("Reclaimed {} bytes of repository mirrors to stay under the checkout quota", freed);
+            }
+        } catch (Exception exception) {
+            Main.LOGGER.error("Failed to reclaim checkout disk space: ", exception);
+        }
+    }
+
+    private static void collectGarbage() {
+        try {
+            RepositoryMirror.collectGarbage();
+        } catch (Exception exception) {
+            Main.LOGGER.error("Failed to collect garbage of repository mirrors: ", exception);
+        }
+    }
+
+    static void delete(Path path) throws IOException {
+        FileUtils.delete(path.toFile(), FileUtils.RECURSIVE | FileUtils.SKIP_MISSING | FileUtils.RETRY);
+    }
+
+    public record Lease(Path path) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            delete(path);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package net.neoforged.automation.service;
+
+import io.javalin.http.Context;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A minimal metrics registry, exposed in the Prometheus text format.
+ * <p>
+ * Metric names may carry labels (e.g. {@code github_requests_total{client="main"}}), in which case all metrics
+ * sharing the same base name are grouped under a single family.
+ */
+public class MetricsService {
+    private static final Map<String, Metric> METRICS = new ConcurrentSkipListMap<>();
+
+    public static Counter counter(String name, String help) {
+        return (Counter) METRICS.computeIfAbsent(name, k -> new Counter(k, help));
+    }
+
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        METRICS.put(name, new Gauge(name, help, value));
+    }
+
+    public static Timer timer(String name, String help) {
+        return (Timer) METRICS.computeIfAbsent(name, k -> new Timer(k, help));
+    }
+
+    public static void get(Context context) {
+        var out = new StringBuilder();
+        String lastFamily = null;
+        for (var metric : METRICS.values()) {
+            var family = family(metric.name());
+            if (!family.equals(lastFamily)) {
+                out.append("# HELP ").append(family).append(' ').append(metric.help()).append('\n');
+                out.append("# TYPE ").append(family).append(' ').append(metric.type()).append('\n');
+                lastFamily = family;
+            }
+            metric.write(out);
+        }
+        context.contentType("text/plain; version=0.0.4").result(out.toString());
+    }
+
+    private static String family(String name) {
+        var idx = name.indexOf('{');
+        return idx < 0 ? name : name.substring(0, idx);
+    }
+
+    private static void sample(StringBuilder out, String name, String suffix, double value) {
+        var idx = name.indexOf('{');
+        if (idx < 0) {
+            out.append(name).append(suffix);
+        } else {
+            out.append(name, 0, idx).append(suffix).append(name, idx, name.length());
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private sealed interface Metric permits Counter, Gauge, Timer {
+        String name();
+
+        String help();
+
+        String type();
+
+        void write(StringBuilder out);
+    }
+
+    public static final class Counter implements Metric {
+        private final String name, help;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String help() {
+            return help;
+        }
+
+        @Override
+        public String type() {
+            return "counter";
+        }
+
+        @Override
+        public void write(StringBuilder out) {
+            sample(out, name, "", value.sum());
+        }
+    }
+
+    private record Gauge(String name, String help, DoubleSupplier value) implements Metric {
+        @Override
+        public String type() {
+            return "gauge";
+        }
+
+        @Override
+        public void write(StringBuilder out) {
+            sample(out, name, "", value.getAsDouble());
+        }
+    }
+
+    public static final class Timer implements Metric {
+        private final String name, help;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Timer(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public void record(Duration duration) {
+            count.increment();
+            sum.add(duration.toNanos() / 1e9);
+        }
+
+        public void recordNanos(long nanos) {
+            count.increment();
+            sum.add(nanos / 1e9);
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String help() {
+            return help;
+        }
+
+        @Override
+        public String type() {
+            return "summary";
+        }
+
+        @Override
+        public void write(StringBuilder out) {
+            sample(out, name, "_count", count.sum());
+            sample(out, name, "_sum", sum.sum());
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package net.neoforged.automation.util;
 
-import io.jsonwebtoken.JwtBuilder;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.DERNull;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
@@ -10,9 +7,7 @@ import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.kohsuke.github.GHApp;
 import org.kohsuke.github.GHAppInstallation;
-import org.kohsuke.github.GHAppInstallationToken;
 import org.kohsuke.github.GitHub;
-import org.kohsuke.github.GitHubBuilder;
 import org.kohsuke.github.authorization.AuthorizationProvider;
 
 import java.io.IOException;
@@ -21,10 +16,8 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
-import java.time.Duration;
 import java.time.Instant;
 import java.util.Base64;
-import java.util.Date;
 
 /**
  * Class containing a few helper methods for creating {@link AuthorizationProvider} for GitHub connections.
@@ -66,49 +59,7 @@ public class AuthUtil {
      */
     public static AppBasedAuthProvider githubApp(String appId, byte[] key, ThrowingFunction<GHApp, GHAppInstallation> owner) throws NoSuchAlgorithmException, InvalidKeySpecException {
         final PrivateKey privateKey = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(key));
-        return new AppBasedAuthProvider() {
-            @Override
-            public String getEncodedAuthorization() throws IOException {
-                return "Bearer " + jwt();
-            }
-
-            @Override
-            public GitHub getApp() throws IOException {
-                return new GitHubBuilder()
-                        .withJwtToken(refreshJWT(appId, privateKey))
-                        .build();
-            }
-
-            private Jwt jwt = null;
-
-            public String jwt() throws IOException {
-                final Instant now = Instant.now();
-                if (jwt == null) {
-                    this.jwt = createJwt();
-                } else if (now.isAfter(jwt.expirationDate())) {
-                    this.jwt = createJwt();
-                }
-                return jwt.jwt();
-            }
-
-            private Jwt createJwt() throws IOException {
-                final GitHub gitHub = getApp();
-
-                final GHAppInstallationToken token = owner.apply(gitHub.getApp()).createToken().create();
-                return new Jwt(token.getExpiresAt().toInstant(), token.getToken());
-            }
-        };
-    }
-
-    private static String refreshJWT(String appId, PrivateKey privateKey) {
-        final Instant now = Instant.now();
-        final Instant exp = now.plus(Duration.ofMinutes(10));
-        final JwtBuilder builder = Jwts.builder()
-                .setIssuedAt(Date.from(now))
-                .setExpiration(Date.from(exp))
-                .setIssuer(appId)
-                .signWith(privateKey, SignatureAlgorithm.RS256);
-        return builder.compact();
+        return new InstallationTokenProvider(appId, privateKey, owner);
     }
 
     public record Jwt(Instant expirationDate, String jwt) {
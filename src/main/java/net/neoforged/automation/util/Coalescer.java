@@ -0,0 +1,95 @@
+package net.neoforged.automation.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces bursts of requests to run an asynchronous task for a key.
+ * <p>
+ * The first request for a key schedules a run after {@code window}, and requests made before that run starts
+ * are merged into it. A request made while a run is in progress schedules exactly one trailing run, so the task
+ * always runs at least once after the last request. Each run receives the value of the latest request.
+ *
+ * @param <K> the type of the keys requests are coalesced by
+ * @param <V> the type of the values the task runs with
+ */
+public final class Coalescer<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Coalescer.class);
+
+    private final ScheduledExecutorService scheduler;
+    private final Duration window;
+    private final Function<V, CompletableFuture<?>> task;
+
+    private final Map<K, State<V>> states = new HashMap<>();
+
+    public Coalescer(ScheduledExecutorService scheduler, Duration window, Function<V, CompletableFuture<?>> task) {
+        this.scheduler = scheduler;
+        this.window = window;
+        this.task = task;
+    }
+
+    public void request(K key, V value) {
+        synchronized (states) {
+            var state = states.computeIfAbsent(key, k -> new State<>());
+            state.value = value;
+            if (state.running) {
+                state.rerun = true;
+            } else if (state.scheduled == null) {
+                state.scheduled = schedule(key);
+            }
+        }
+    }
+
+    private ScheduledFuture<?> schedule(K key) {
+        return scheduler.schedule(() -> Thread.ofVirtual().start(() -> run(key)), window.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void run(K key) {
+        V value;
+        synchronized (states) {
+            var state = states.get(key);
+            state.scheduled = null;
+            state.running = true;
+            value = state.value;
+        }
+
+        CompletableFuture<?> result;
+        try {
+            result = task.apply(value);
+        } catch (Throwable throwable) {
+            result = CompletableFuture.failedFuture(throwable);
+        }
+
+        result.whenComplete((r, exception) -> {
+            if (exception != null) {
+                LOGGER.error("Coalesced task for {} failed: ", key, exception);
+            }
+
+            synchronized (states) {
+                var state = states.get(key);
+                state.running = false;
+                if (state.rerun) {
+                    state.rerun = false;
+                    state.scheduled = schedule(key);
+                } else {
+                    states.remove(key);
+                }
+            }
+        });
+    }
+
+    private static final class State<V> {
+        private V value;
+        private ScheduledFuture<?> scheduled;
+        private boolean running, rerun;
+    }
+}
@@ -1,29 +1,85 @@
 package net.neoforged.automation.util;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 public class DiffUtils {
     private static final String DEV_NULL = "/dev/null";
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -\\d+(?:,(\\d+))? \\+\\d+(?:,(\\d+))? @@");
 
-    public static List<String> detectChangedFiles(String[] diffByLine) {
+    public static List<String> detectChangedFiles(InputStream diff) throws IOException {
         final List<String> modified = new ArrayList<>();
-        for (int i = 0; i < diffByLine.length - 1; i++) {
-            final String line = diffByLine[i];
-            if (line.startsWith("--- ")) {
-                if (diffByLine[i + 1].startsWith("+++ ")) {
-                    var removedName = line.substring(4).trim();
-
-                    if (removedName.equals(DEV_NULL)) {
-                        modified.add(diffByLine[i + 1].substring(4).trim());
-                    } else {
-                        modified.add(removedName);
-                    }
+        parse(diff, new DiffVisitor() {
+            @Override
+            public void file(@Nullable String oldPath, @Nullable String newPath) {
+                modified.add(oldPath == null ? newPath : oldPath);
+            }
+        });
+        return modified;
+    }
+
+    /**
+     * Parse the given unified diff line by line, without reading it into memory.
+     * The lines of each hunk are counted from its header, so that they are never mistaken for file headers.
+     */
+    public static void parse(InputStream diff, DiffVisitor visitor) throws IOException {
+        final var reader = new BufferedReader(new InputStreamReader(diff, StandardCharsets.UTF_8));
+        String oldPath = null;
+        int oldLines = 0, newLines = 0;
 
-                    i++; // Skip the add marker
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (oldLines > 0 || newLines > 0) {
+                switch (line.isEmpty() ? ' ' : line.charAt(0)) {
+                    case ' ' -> {
+                        oldLines--;
+                        newLines--;
+                    }
+                    case '-' -> oldLines--;
+                    case '+' -> newLines--;
+                    // "\ No newline at end of file" markers do not count as lines
+                    default -> {}
+                }
+                visitor.line(line);
+            } else if (line.startsWith("--- ")) {
+                oldPath = path(line);
+            } else if (line.startsWith("+++ ")) {
+                visitor.file(oldPath, path(line));
+                oldPath = null;
+            } else if (line.startsWith("@@ ")) {
+                final var matcher = HUNK_HEADER.matcher(line);
+                if (matcher.find()) {
+                    oldLines = matcher.group(1) == null ? 1 : Integer.parseInt(matcher.group(1));
+                    newLines = matcher.group(2) == null ? 1 : Integer.parseInt(matcher.group(2));
                 }
+                visitor.hunk(line);
             }
         }
-        return modified;
+    }
+
+    @Nullable
+    private static String path(String header) {
+        final var path = header.substring(4).trim();
+        return path.equals(DEV_NULL) ? null : path;
+    }
+
+    /**
+     * A visitor of the parts of a diff. Paths keep their {@code a/} and {@code b/} prefixes, and are {@code null}
+     * for the missing side of an added or removed file.
+     */
+    public interface DiffVisitor {
+        default void file(@Nullable String oldPath, @Nullable String newPath) {}
+
+        default void hunk(String header) {}
+
+        default void line(String line) {}
     }
 }
@@ -1,5 +1,7 @@
 package net.neoforged.automation.util;
 
+import java.util.Locale;
+
 public enum GHAction {
     /** Comments are created */
     CREATED,
@@ -12,5 +14,18 @@ public enum GHAction {
 
     SYNCHRONIZE,
 
-    COMPLETED
+    COMPLETED;
+
+    private final String wireName;
+
+    GHAction() {
+        this.wireName = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * {@return the name of this action, as found in webhook payloads}
+     */
+    public String wireName() {
+        return wireName;
+    }
 }
@@ -0,0 +1,138 @@
+package net.neoforged.automation.util;
+
+import com.apollographql.apollo.api.Operation;
+import net.neoforged.automation.Main;
+import net.neoforged.automation.github.RequestPriority;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges GraphQL operations of the same type, issued concurrently for the same client, into a single request.
+ * <p>
+ * The first operation of a batch opens a window of {@code window}, and the operations issued during it are sent
+ * together once it closes, or as soon as the batch reaches {@value #MAX_OPERATIONS} operations or
+ * {@value #MAX_NODES} nodes, which keeps batches well under the node limits of GitHub.
+ */
+public final class GraphQlBatcher {
+    public static final GraphQlBatcher INSTANCE = new GraphQlBatcher(Main.EXECUTOR, Duration.ofMillis(25));
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphQlBatcher.class);
+    private static final int MAX_OPERATIONS = 50;
+    private static final long MAX_NODES = 50_000;
+    private static final Map<Class<?>, Long> NODES = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+    private final Duration window;
+
+    private final Map<BatchKey, Batch<?>> batches = new HashMap<>();
+
+    public GraphQlBatcher(ScheduledExecutorService scheduler, Duration window) {
+        this.scheduler = scheduler;
+        this.window = window;
+    }
+
+    /**
+     * Queue the given operation to be sent in the next batch of its type.
+     *
+     * @return a future completed with the data of the operation
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Operation.Data> CompletableFuture<T> submit(GitHub gitHub, Operation<T> operation) {
+        final long nodes = NODES.computeIfAbsent(operation.getClass(), k -> GitHubAccessor.estimateNodes(operation));
+        final var future = new CompletableFuture<T>();
+        final var key = new BatchKey(gitHub, operation.getClass());
+
+        Batch<T> full = null;
+        synchronized (batches) {
+            var batch = (Batch<T>) batches.get(key);
+            if (batch != null && (batch.operations.size() >= MAX_OPERATIONS || batch.nodes + nodes > MAX_NODES)) {
+                batches.remove(key);
+                full = batch;
+                batch = null;
+            }
+            if (batch == null) {
+                final var created = new Batch<T>(gitHub);
+                batches.put(key, created);
+                scheduler.schedule(() -> close(key, created), window.toMillis(), TimeUnit.MILLISECONDS);
+                batch = created;
+            }
+            batch.operations.add(operation);
+            batch.futures.add(future);
+            batch.nodes += nodes;
+            // A batch is sent with the highest priority of its operations
+            if (RequestPriority.current().compareTo(batch.priority) < 0) {
+                batch.priority = RequestPriority.current();
+            }
+        }
+
+        if (full != null) {
+            send(full);
+        }
+        return future;
+    }
+
+    /**
+     * Send the given operation in the next batch of its type, and wait for its data.
+     */
+    public <T extends Operation.Data> T query(GitHub gitHub, Operation<T> operation) throws IOException {
+        try {
+            return submit(gitHub, operation).join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof IOException io) throw io;
+            if (exception.getCause() instanceof RuntimeException re) throw re;
+            throw exception;
+        }
+    }
+
+    private void close(BatchKey key, Batch<?> batch) {
+        synchronized (batches) {
+            // The batch may have been sent early because it was full
+            if (!batches.remove(key, batch)) return;
+        }
+        send(batch);
+    }
+
+    private <T extends Operation.Data> void send(Batch<T> batch) {
+        Thread.ofVirtual().name("graphql-batch").start(() -> {
+            final List<T> results;
+            try (var ignored = batch.priority.enter()) {
+                results = GitHubAccessor.graphQl(batch.gitHub, batch.operations);
+            } catch (Exception exception) {
+                LOGGER.error("Batched GraphQL request of {} operations failed", batch.operations.size(), exception);
+                batch.futures.forEach(future -> future.completeExceptionally(exception));
+                return;
+            }
+            for (int i = 0; i < results.size(); i++) {
+                batch.futures.get(i).complete(results.get(i));
+            }
+        });
+    }
+
+    private record BatchKey(GitHub gitHub, Class<?> type) {}
+
+    private static final class Batch<T extends Operation.Data> {
+        private final GitHub gitHub;
+        private final List<Operation<T>> operations = new ArrayList<>();
+        private final List<CompletableFuture<T>> futures = new ArrayList<>();
+        private long nodes;
+        private RequestPriority priority = RequestPriority.BACKGROUND;
+
+        private Batch(GitHub gitHub) {
+            this.gitHub = gitHub;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package net.neoforged.automation.util;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import net.neoforged.automation.Main;
+import org.kohsuke.github.GHApp;
+import org.kohsuke.github.GHAppInstallation;
+import org.kohsuke.github.GHAppInstallationToken;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.security.PrivateKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link AuthUtil.AppBasedAuthProvider} that authenticates as an installation of a GitHub application.
+ * <p>
+ * The app client, its signed JWT, the installation and the installation token are all cached. The token is refreshed
+ * in the background {@link #REFRESH_MARGIN ahead} of its expiry, and a request finding it expired nonetheless
+ * refreshes it, with concurrent refreshes collapsed into a single one. A failure to create a token drops the cached
+ * client, JWT and installation, so that the next attempt resolves them again.
+ */
+final class InstallationTokenProvider implements AuthUtil.AppBasedAuthProvider {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InstallationTokenProvider.class);
+    private static final Duration JWT_LIFETIME = Duration.ofMinutes(10);
+    private static final Duration REFRESH_MARGIN = Duration.ofMinutes(5);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final String appId;
+    private final PrivateKey privateKey;
+    private final AuthUtil.ThrowingFunction<GHApp, GHAppInstallation> owner;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile AuthUtil.Jwt appJwt;
+    private volatile AuthUtil.Jwt token;
+    private GitHub app;
+    private GHAppInstallation installation;
+
+    InstallationTokenProvider(String appId, PrivateKey privateKey, AuthUtil.ThrowingFunction<GHApp, GHAppInstallation> owner) {
+        this.appId = appId;
+        this.privateKey = privateKey;
+        this.owner = owner;
+    }
+
+    @Override
+    public String getEncodedAuthorization() throws IOException {
+        var current = token;
+        if (current == null || isExpiring(current, Duration.ofMinutes(1))) {
+            current = refresh(current);
+        }
+        return "Bearer " + current.jwt();
+    }
+
+    @Override
+    public GitHub getApp() throws IOException {
+        lock.lock();
+        try {
+            if (app == null) {
+                app = new GitHubBuilder()
+                        .withAuthorizationProvider(() -> "Bearer " + appJwt().jwt())
+                        .build();
+            }
+            return app;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Refresh the installation token, unless another thread already replaced {@code expected} while this one waited.
+     */
+    private AuthUtil.Jwt refresh(AuthUtil.Jwt expected) throws IOException {
+        lock.lock();
+        try {
+            if (token != expected && token != null) {
+                return token;
+            }
+
+            GHAppInstallationToken created;
+            try {
+                if (installation == null) {
+                    installation = owner.apply(getApp().getApp());
+                }
+                created = installation.createToken().create();
+            } catch (IOException | RuntimeException exception) {
+                // The app may have been reinstalled or its installation changed, so resolve both again on the next attempt
+                installation = null;
+                app = null;
+                appJwt = null;
+                throw exception;
+            }
+            token = new AuthUtil.Jwt(created.getExpiresAt().toInstant(), created.getToken());
+            scheduleRefresh(Duration.between(Instant.now(), token.expirationDate()).minus(REFRESH_MARGIN));
+            return token;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleRefresh(Duration delay) {
+        Main.EXECUTOR.schedule(() -> Thread.ofVirtual().name("installation-token-refresh").start(() -> {
+            var current = token;
+            if (current != null && !isExpiring(current, REFRESH_MARGIN)) return; // Refreshed in the meantime
+            try {
+                refresh(current);
+            } catch (Exception exception) {
+                LOGGER.error("Failed to refresh installation token of app {}, retrying in {}", appId, RETRY_DELAY, exception);
+                scheduleRefresh(RETRY_DELAY);
+            }
+        }), Math.max(delay.toMillis(), 0), TimeUnit.MILLISECONDS);
+    }
+
+    private AuthUtil.Jwt appJwt() {
+        var current = appJwt;
+        // Leave a minute for clock drift and requests in flight
+        if (current == null || isExpiring(current, Duration.ofMinutes(1))) {
+            final Instant now = Instant.now();
+            final Instant exp = now.plus(JWT_LIFETIME);
+            current = new AuthUtil.Jwt(exp, Jwts.builder()
+                    .setIssuedAt(Date.from(now))
+                    .setExpiration(Date.from(exp))
+                    .setIssuer(appId)
+                    .signWith(privateKey, SignatureAlgorithm.RS256)
+                    .compact());
+            appJwt = current;
+        }
+        return current;
+    }
+
+    private static boolean isExpiring(AuthUtil.Jwt jwt, Duration margin) {
+        return Instant.now().plus(margin).isAfter(jwt.expirationDate());
+    }
+}
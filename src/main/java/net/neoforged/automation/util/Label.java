@@ -1,8 +1,8 @@
 package net.neoforged.automation.util;
 
+import net.neoforged.automation.github.LabelIndex;
 import org.kohsuke.github.GHIssue;
 import org.kohsuke.github.GHRepository;
-import org.kohsuke.github.GitHubAccessor;
 
 import java.io.IOException;
 
@@ -20,7 +20,7 @@ public enum Label {
     }
 
     public void label(GHIssue issue) throws IOException {
-        if (!GitHubAccessor.getExistingLabels(issue.getRepository()).contains(name)) {
+        if (!LabelIndex.exists(issue.getRepository(), name)) {
             create(issue.getRepository());
         }
         if (!has(issue)) {
@@ -40,6 +40,7 @@ public enum Label {
 
     public void create(GHRepository repository) throws IOException {
         repository.createLabel(name, colour, description);
+        LabelIndex.add(repository, name);
     }
 
     public String getLabelName() {
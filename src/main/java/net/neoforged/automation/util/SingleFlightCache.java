@@ -0,0 +1,81 @@
+package net.neoforged.automation.util;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A short-lived cache which collapses concurrent lookups of the same key into a single load.
+ * <p>
+ * The first lookup of a key loads the value on the calling thread, while concurrent lookups of the same key wait for
+ * that load and share its result. Loaded values are then served for {@code ttl}, and failed loads are not cached.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class SingleFlightCache<K, V> {
+    private static final int PURGE_INTERVAL = 256;
+
+    private final long ttl;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    public SingleFlightCache(Duration ttl) {
+        this.ttl = ttl.toNanos();
+    }
+
+    public V get(K key, FunctionalInterfaces.SupplierException<V> loader) throws IOException {
+        if (lookups.incrementAndGet() % PURGE_INTERVAL == 0) {
+            var now = System.nanoTime();
+            entries.values().removeIf(entry -> entry.isExpired(now));
+        }
+
+        var load = new Entry<V>(new CompletableFuture<>());
+        var entry = entries.compute(key, (k, existing) -> existing == null || existing.isExpired(System.nanoTime()) ? load : existing);
+        if (entry != load) {
+            try {
+                return entry.future.join();
+            } catch (CompletionException exception) {
+                if (exception.getCause() instanceof IOException io) throw io;
+                if (exception.getCause() instanceof RuntimeException re) throw re;
+                throw exception;
+            }
+        }
+
+        try {
+            var value = loader.get();
+            load.expiresAt = System.nanoTime() + ttl;
+            load.future.complete(value);
+            return value;
+        } catch (IOException | RuntimeException exception) {
+            entries.remove(key, load);
+            load.future.completeExceptionally(exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * Drop the cached value of the given key, so that the next lookup loads it again.
+     */
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    private static final class Entry<V> {
+        private final CompletableFuture<V> future;
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private Entry(CompletableFuture<V> future) {
+            this.future = future;
+        }
+
+        private boolean isExpired(long now) {
+            // In-flight loads never expire; expiresAt is only set once they complete
+            return expiresAt - now < 0;
+        }
+    }
+}
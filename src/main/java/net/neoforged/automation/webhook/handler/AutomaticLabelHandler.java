@@ -1,13 +1,12 @@
 package net.neoforged.automation.webhook.handler;
 
-import com.github.api.GetPullRequestQuery;
 import com.github.api.fragment.PullRequestInfo;
+import net.neoforged.automation.github.PullRequestLookups;
 import net.neoforged.automation.util.GHAction;
 import net.neoforged.automation.webhook.impl.ActionBasedHandler;
 import org.kohsuke.github.GHEventPayload;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GitHub;
-import org.kohsuke.github.GitHubAccessor;
 
 import java.io.IOException;
 import java.util.HashSet;
@@ -43,14 +42,7 @@ public class AutomaticLabelHandler implements ActionBasedHandler<GHEventPayload.
     }
 
     public static List<PullRequestInfo.Node1> getClosingIssues(GitHub gitHub, GHPullRequest pr) throws IOException {
-        return GitHubAccessor.graphQl(gitHub, GetPullRequestQuery.builder()
-                .name(pr.getRepository().getName())
-                .owner(pr.getRepository().getOwnerName())
-                .number(pr.getNumber())
-                .build())
-                .repository
-                .pullRequest
-                .pullRequestInfo
+        return PullRequestLookups.pullRequestInfo(gitHub, pr.getRepository(), pr.getNumber(), pr.getHead().getSha())
                 .closingIssuesReferences
                 .nodes;
     }
@@ -7,6 +7,7 @@ import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.neoforged.automation.Configuration;
 import net.neoforged.automation.command.api.GHCommandContext;
+import net.neoforged.automation.github.RequestPriority;
 import net.neoforged.automation.util.FunctionalInterfaces;
 import net.neoforged.automation.util.GHAction;
 import net.neoforged.automation.webhook.impl.ActionBasedHandler;
@@ -41,6 +42,12 @@ public record CommandHandler(CommandDispatcher<GHCommandContext> dispatcher) imp
                         .build()));
             }
         }, command.command());
+        try (var ignored = RequestPriority.INTERACTIVE.enter()) {
+            execute(command, context, payload);
+        }
+    }
+
+    private void execute(CommandData command, GHCommandContext context, GHEventPayload.IssueComment payload) {
         var results = dispatcher.parse(command.command(), context);
 
         // If the command does not fully parse, then return
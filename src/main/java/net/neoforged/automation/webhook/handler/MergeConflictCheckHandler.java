@@ -1,11 +1,13 @@
 package net.neoforged.automation.webhook.handler;
 
-import com.github.api.GetPullRequestQuery;
 import com.github.api.GetPullRequestsQuery;
 import com.github.api.fragment.PullRequestInfo;
 import com.github.api.type.MergeableState;
 import com.github.api.type.PullRequestState;
 import net.neoforged.automation.Configuration;
+import net.neoforged.automation.github.PullRequestLookups;
+import net.neoforged.automation.github.RequestPriority;
+import net.neoforged.automation.util.Coalescer;
 import net.neoforged.automation.util.GHAction;
 import net.neoforged.automation.util.Label;
 import net.neoforged.automation.webhook.impl.GitHubEvent;
@@ -19,87 +21,131 @@ import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public final class MergeConflictCheckHandler implements MultiEventHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MergeConflictCheckHandler.class);
     private static final long PR_BASE_TIME = 3;
     private static final ScheduledThreadPoolExecutor SERVICE = new ScheduledThreadPoolExecutor(1);
-    private static final Set<String> IN_PROGRESS_REPOS = Collections.synchronizedSet(new HashSet<>());
+    private static final MergeabilityWatcher WATCHER = new MergeabilityWatcher(SERVICE, Duration.ofSeconds(PR_BASE_TIME), Duration.ofMinutes(1), Duration.ofMinutes(5));
+
+    private final Coalescer<String, PushedBranch> pushes;
+
+    /**
+     * @param pushWindow the window in which pushes to the same branch are merged into a single recheck
+     */
+    public MergeConflictCheckHandler(Duration pushWindow) {
+        this.pushes = new Coalescer<>(SERVICE, pushWindow, push -> {
+            try (var ignored = RequestPriority.BACKGROUND.enter()) {
+                return checkPRConflicts(push.gitHub(), push.repository(), push.branch());
+            }
+        });
+    }
 
     @Override
     public void register(WebhookHandler handler) {
         handler.registerHandler(GitHubEvent.PUSH, (gitHub, payload) -> {
-            // Only run once for a repository
-            if (!IN_PROGRESS_REPOS.add(payload.getRepository().getFullName())) {
-                return;
-            }
-
             var ref = payload.getRef();
             if (!ref.startsWith("refs/heads/")) return; // Only check for commits pushed to branches
             var branch = ref.substring(11);
-            checkPRConflicts(gitHub, payload.getRepository(), branch);
+            pushes.request(payload.getRepository().getFullName() + ":" + branch, new PushedBranch(gitHub, payload.getRepository(), branch));
         });
 
         handler.registerFilteredHandler(GitHubEvent.PULL_REQUEST, (gitHub, payload, action) -> checkPR(gitHub, payload.getPullRequest()), GHAction.SYNCHRONIZE);
     }
 
-    public static void checkPR(GitHub gitHub, GHPullRequest pullRequest) throws Exception {
-        while (checkConflict(gitHub, GitHubAccessor.graphQl(gitHub, GetPullRequestQuery.builder()
-                        .owner(pullRequest.getRepository().getOwnerName())
-                        .name(pullRequest.getRepository().getName())
-                        .number(pullRequest.getNumber())
-                        .build())
-                .repository
-                .pullRequest.pullRequestInfo) == MergeableState.UNKNOWN) {
-            Thread.sleep(PR_BASE_TIME * 1000);
-        }
+    /**
+     * Wait for GitHub to compute the mergeability of the given PR, and check it.
+     *
+     * @return a future completed with the mergeability of the PR, or {@link MergeableState#UNKNOWN} if GitHub did not compute it in time
+     */
+    public static CompletableFuture<MergeableState> checkPR(GitHub gitHub, GHPullRequest pullRequest) {
+        return check(gitHub, WATCHER.watch(gitHub, pullRequest.getRepository().getOwnerName(), pullRequest.getRepository().getName(), pullRequest.getNumber()))
+                .whenComplete((state, exception) -> {
+                    if (exception != null) {
+                        LOGGER.error("Failed to check the mergeability of PR {}", pullRequest.getHtmlUrl(), exception);
+                    }
+                });
     }
 
-    public static void checkPRConflicts(GitHub gitHub, GHRepository repository, String branchName) throws IOException {
-        // TODO - paginate
-        final var prs = GitHubAccessor.graphQl(gitHub, GetPullRequestsQuery.builder()
-                        .owner(repository.getOwnerName())
-                        .name(repository.getName())
-                        .baseRef(branchName)
-                        .states(List.of(PullRequestState.OPEN))
-                        .build()).repository.pullRequests
-                .nodes;
-
-        final long unknownAmount = prs.stream().filter(it -> it.pullRequestInfo.mergeable == MergeableState.UNKNOWN).count();
-        if (unknownAmount > 0) {
-            // If we don't know the status of one or more PRs, give GitHub some time to think.
-            SERVICE.schedule(() -> {
-                try {
-                    checkPRConflicts(gitHub, repository, branchName);
-                } catch (IOException exception) {
-                    throw new RuntimeException(exception);
+    /**
+     * Check the mergeability of all open PRs targeting the given branch.
+     * PRs are checked page by page as they are fetched, and the PRs whose mergeability GitHub has not computed
+     * yet are handed to the {@link MergeabilityWatcher}.
+     *
+     * @return a future completed once all PRs have been checked
+     */
+    public static CompletableFuture<Void> checkPRConflicts(GitHub gitHub, GHRepository repository, String branchName) {
+        final List<Integer> unknown = new ArrayList<>();
+        try {
+            String cursor = null;
+            do {
+                final var page = GitHubAccessor.graphQl(gitHub, GetPullRequestsQuery.builder()
+                                .owner(repository.getOwnerName())
+                                .name(repository.getName())
+                                .baseRef(branchName)
+                                .states(List.of(PullRequestState.OPEN))
+                                .after(cursor)
+                                .build()).repository.pullRequests;
+
+                for (final var node : page.nodes) {
+                    if (node.pullRequestInfo.mergeable == MergeableState.UNKNOWN) {
+                        unknown.add(node.pullRequestInfo.number);
+                    } else {
+                        checkConflict(gitHub, node.pullRequestInfo);
+                    }
                 }
-            }, PR_BASE_TIME * unknownAmount, TimeUnit.SECONDS);
-            return;
+
+                cursor = page.pageInfo.hasNextPage ? page.pageInfo.endCursor : null;
+            } while (cursor != null);
+        } catch (IOException exception) {
+            return CompletableFuture.failedFuture(exception);
         }
 
-        for (final var node : prs) {
-            checkConflict(gitHub, node.pullRequestInfo);
+        if (unknown.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
         }
 
-        IN_PROGRESS_REPOS.remove(repository.getFullName());
+        return CompletableFuture.allOf(unknown.stream()
+                .map(number -> check(gitHub, WATCHER.watch(gitHub, repository.getOwnerName(), repository.getName(), number)))
+                .toArray(CompletableFuture[]::new));
     }
 
+    private static CompletableFuture<MergeableState> check(GitHub gitHub, CompletableFuture<PullRequestInfo> watch) {
+        return watch.thenApply(info -> {
+            try {
+                return checkConflict(gitHub, info);
+            } catch (IOException exception) {
+                throw new CompletionException(exception);
+            }
+        }).exceptionally(exception -> {
+            if (exception.getCause() instanceof TimeoutException) {
+                LOGGER.warn("Gave up on checking the mergeability of a PR: {}", exception.getCause().getMessage());
+                return MergeableState.UNKNOWN;
+            }
+            throw exception instanceof CompletionException ce ? ce : new CompletionException(exception);
+        });
+    }
+
+    private record PushedBranch(GitHub gitHub, GHRepository repository, String branch) {}
+
     public static MergeableState checkConflict(GitHub gitHub, PullRequestInfo info) throws IOException {
         final boolean hasLabel = info.labels.nodes.stream().anyMatch(node -> node.name.equalsIgnoreCase(Label.NEEDS_REBASE.getLabelName()));
         final MergeableState state = info.mergeable;
         if (hasLabel && state == MergeableState.CONFLICTING) return state; // We have conflicts and the PR has the label already
 
         final int number = info.number;
-        final GHRepository repo = gitHub.getRepository(info.repository.nameWithOwner);
+        final GHRepository repo = PullRequestLookups.repository(gitHub, info.repository.nameWithOwner);
         final GHPullRequest pr = repo.getPullRequest(number);
 
         // If the PR is mergeable but behind and it has a keep-rebased label, we shall rebase it
@@ -0,0 +1,120 @@
+package net.neoforged.automation.webhook.handler;
+
+import com.github.api.GetPullRequestQuery;
+import com.github.api.fragment.PullRequestInfo;
+import com.github.api.type.MergeableState;
+import net.neoforged.automation.util.GraphQlBatcher;
+import org.kohsuke.github.GitHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waits for GitHub to compute the mergeability of pull requests, without blocking a thread per pull request.
+ * <p>
+ * The watched pull requests that are due are polled on each tick through the {@link GraphQlBatcher}, which sends
+ * them in a single request.
+ * A pull request whose mergeability is still unknown is polled again with an exponentially increasing delay, until
+ * its deadline expires.
+ */
+public final class MergeabilityWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MergeabilityWatcher.class);
+
+    private final long baseDelay, maxDelay, timeout;
+    private final Map<Key, Watch> watches = new ConcurrentHashMap<>();
+
+    /**
+     * @param baseDelay the delay before the second poll of a pull request, doubled with each following poll
+     * @param maxDelay  the maximum delay between two polls of a pull request
+     * @param timeout   the time after which the watch of a pull request fails with a {@link TimeoutException}
+     */
+    public MergeabilityWatcher(ScheduledExecutorService scheduler, Duration baseDelay, Duration maxDelay, Duration timeout) {
+        this.baseDelay = baseDelay.toMillis();
+        this.maxDelay = maxDelay.toMillis();
+        this.timeout = timeout.toMillis();
+        scheduler.scheduleWithFixedDelay(this::tick, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Watch the given pull request until its mergeability is known.
+     * Watching a pull request that is already watched joins the existing watch.
+     *
+     * @return a future completed with the information of the pull request once its mergeability is known
+     */
+    public CompletableFuture<PullRequestInfo> watch(GitHub gitHub, String owner, String name, int number) {
+        return watches.computeIfAbsent(new Key(owner, name, number), key -> new Watch(gitHub, key, System.currentTimeMillis() + timeout, new CompletableFuture<>())).future;
+    }
+
+    private void tick() {
+        var now = System.currentTimeMillis();
+        for (var watch : watches.values()) {
+            if (watch.polling || watch.nextPoll > now) continue;
+
+            watch.polling = true;
+            GraphQlBatcher.INSTANCE.submit(watch.gitHub, GetPullRequestQuery.builder()
+                            .owner(watch.key.owner())
+                            .name(watch.key.name())
+                            .number(watch.key.number())
+                            .build())
+                    .whenComplete((data, exception) -> {
+                        if (exception != null) {
+                            LOGGER.error("Failed to poll the mergeability of {}", watch.key, exception);
+                            reschedule(watch);
+                        } else if (data.repository == null || data.repository.pullRequest == null) {
+                            complete(watch).completeExceptionally(new IllegalStateException("Pull request " + watch.key + " does not exist"));
+                        } else if (data.repository.pullRequest.pullRequestInfo.mergeable == MergeableState.UNKNOWN) {
+                            reschedule(watch);
+                        } else {
+                            complete(watch).complete(data.repository.pullRequest.pullRequestInfo);
+                        }
+                        watch.polling = false;
+                    });
+        }
+    }
+
+    private void reschedule(Watch watch) {
+        var now = System.currentTimeMillis();
+        if (now >= watch.deadline) {
+            complete(watch).completeExceptionally(new TimeoutException("Mergeability of " + watch.key + " was not computed in time"));
+            return;
+        }
+        watch.nextPoll = now + Math.min(maxDelay, baseDelay << Math.min(watch.attempt++, 20));
+    }
+
+    private CompletableFuture<PullRequestInfo> complete(Watch watch) {
+        watches.remove(watch.key, watch);
+        return watch.future;
+    }
+
+    private record Key(String owner, String name, int number) {
+        @Override
+        public String toString() {
+            return owner + "/" + name + "#" + number;
+        }
+    }
+
+    private static final class Watch {
+        private final GitHub gitHub;
+        private final Key key;
+        private final long deadline;
+        private final CompletableFuture<PullRequestInfo> future;
+
+        private volatile long nextPoll;
+        private volatile boolean polling;
+        private int attempt;
+
+        private Watch(GitHub gitHub, Key key, long deadline, CompletableFuture<PullRequestInfo> future) {
+            this.gitHub = gitHub;
+            this.key = key;
+            this.deadline = deadline;
+            this.future = future;
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package net.neoforged.automation.webhook.handler;
 
 import com.github.api.GetPullRequestQuery;
+import net.neoforged.automation.util.GraphQlBatcher;
 import net.neoforged.automation.webhook.impl.EventHandler;
 import org.kohsuke.github.GHCommitState;
 import org.kohsuke.github.GHEventPayload;
+import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GitHub;
-import org.kohsuke.github.GitHubAccessor;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.regex.Pattern;
 
@@ -21,9 +23,27 @@ public record ReleaseMessageHandler(GitHub releasesApp) implements EventHandler<
             var closedIssues = new HashSet<Integer>();
             var baseIssueComment = "\uD83D\uDE80 This issue has been resolved in " + payload.getRepository().getName() + " version `" + version + "`.";
 
+            var pullRequests = new ArrayList<GHPullRequest>();
+            var unmerged = false;
             for (var pr : payload.getCommit().listPullRequests()) {
-                if (pr.getMergedAt() == null) return;
+                if (pr.getMergedAt() == null) {
+                    unmerged = true;
+                    break;
+                }
+                pullRequests.add(pr);
+            }
+
+            // Query the closing issues of all PRs up front so that the queries are batched together
+            var closingIssues = pullRequests.stream()
+                    .map(pr -> GraphQlBatcher.INSTANCE.submit(gitHub, GetPullRequestQuery.builder()
+                            .name(payload.getRepository().getName())
+                            .owner(payload.getRepository().getOwnerName())
+                            .number(pr.getNumber())
+                            .build()))
+                    .toList();
 
+            for (int i = 0; i < pullRequests.size(); i++) {
+                var pr = pullRequests.get(i);
                 var repo = releasesApp.getRepository(payload.getRepository().getFullName());
 
                 baseIssueComment = "\uD83D\uDE80 This issue has been resolved in " + repo.getName() + " version `"
@@ -32,11 +52,7 @@ public record ReleaseMessageHandler(GitHub releasesApp) implements EventHandler<
                 repo.getPullRequest(pr.getNumber())
                         .comment("\uD83D\uDE80 This PR has been released as " + repo.getName() + " version `" + version + "`.");
 
-                for (var issueNode : GitHubAccessor.graphQl(gitHub, GetPullRequestQuery.builder()
-                                .name(payload.getRepository().getName())
-                                .owner(payload.getRepository().getOwnerName())
-                                .number(pr.getNumber())
-                                .build())
+                for (var issueNode : closingIssues.get(i).join()
                         .repository
                         .pullRequest
                         .pullRequestInfo
@@ -47,6 +63,7 @@ public record ReleaseMessageHandler(GitHub releasesApp) implements EventHandler<
                     closedIssues.add(issueNode.issueInfo.number);
                 }
             }
+            if (unmerged) return;
 
             var matcher = CLOSE_REFERENCE.matcher(payload.getCommit().getCommitShortInfo().getMessage());
             while (matcher.find()) {
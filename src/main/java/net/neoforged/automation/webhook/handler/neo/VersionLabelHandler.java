@@ -1,11 +1,11 @@
 package net.neoforged.automation.webhook.handler.neo;
 
+import net.neoforged.automation.github.LabelIndex;
 import net.neoforged.automation.util.GHAction;
 import net.neoforged.automation.webhook.impl.ActionBasedHandler;
 import org.kohsuke.github.GHEventPayload;
 import org.kohsuke.github.GHLabel;
 import org.kohsuke.github.GitHub;
-import org.kohsuke.github.GitHubAccessor;
 
 import java.net.URI;
 import java.util.Properties;
@@ -33,7 +33,7 @@ public class VersionLabelHandler implements ActionBasedHandler<GHEventPayload.Pu
 
             if (!toRemoveLabels.remove(mcVer)) {
                 // Only add the label if it exists, don't create a new one
-                if (GitHubAccessor.getLabel(payload.getRepository(), mcVer) != null) {
+                if (LabelIndex.exists(payload.getRepository(), mcVer)) {
                     payload.getPullRequest().addLabels(mcVer);
                 }
             }
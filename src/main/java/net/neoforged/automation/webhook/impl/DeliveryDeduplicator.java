@@ -0,0 +1,91 @@
+package net.neoforged.automation.webhook.impl;
+
+import net.neoforged.automation.db.Database;
+import net.neoforged.automation.db.WebhookDeliveriesDAO;
+import net.neoforged.automation.service.MetricsService;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks the {@link WebhookHandler#GITHUB_DELIVERY delivery IDs} seen in the last {@code window}, so that
+ * deliveries GitHub sends again (e.g. after a timeout) are not handled twice.
+ * <p>
+ * At most {@code maxSize} IDs are kept in memory. If {@code persistent}, IDs are also recorded in the database
+ * so that redeliveries are detected across restarts.
+ */
+final class DeliveryDeduplicator {
+    private final long window;
+    private final int maxSize;
+    private final boolean persistent;
+
+    private final Map<String, Long> seen = new LinkedHashMap<>();
+    private int recordsSincePrune;
+
+    private final MetricsService.Counter hits = MetricsService.counter("webhook_delivery_duplicates_total", "Deliveries skipped as they were already received");
+    private final MetricsService.Counter misses = MetricsService.counter("webhook_delivery_unique_total", "Deliveries received for the first time");
+
+    DeliveryDeduplicator(Duration window, int maxSize, boolean persistent) {
+        this.window = window.toMillis();
+        this.maxSize = maxSize;
+        this.persistent = persistent;
+    }
+
+    /**
+     * Mark the delivery as seen.
+     *
+     * @return {@code true} if the delivery was not already seen within the window
+     */
+    boolean markSeen(String delivery) {
+        var now = System.currentTimeMillis();
+        var cutoff = now - window;
+        synchronized (seen) {
+            evict(cutoff);
+            var previous = seen.get(delivery);
+            if (previous != null && previous >= cutoff) {
+                hits.increment();
+                return false;
+            }
+            seen.remove(delivery);
+            seen.put(delivery, now);
+        }
+
+        if (persistent && Database.withExtension(WebhookDeliveriesDAO.class, db -> db.record(delivery, now, cutoff)) == 0) {
+            hits.increment();
+            return false;
+        }
+
+        misses.increment();
+        return true;
+    }
+
+    /**
+     * Forget that the delivery was received, allowing a manual redelivery to be handled (e.g. after a failure).
+     */
+    void forget(String delivery) {
+        synchronized (seen) {
+            seen.remove(delivery);
+        }
+        if (persistent) {
+            Database.useExtension(WebhookDeliveriesDAO.class, db -> db.forget(delivery));
+        }
+    }
+
+    private void evict(long cutoff) {
+        var itr = seen.values().iterator();
+        while (itr.hasNext()) {
+            var time = itr.next();
+            if (time < cutoff || seen.size() >= maxSize) {
+                itr.remove();
+            } else {
+                break;
+            }
+        }
+
+        if (persistent && ++recordsSincePrune >= 1000) {
+            recordsSincePrune = 0;
+            Database.useExtension(WebhookDeliveriesDAO.class, db -> db.prune(cutoff));
+        }
+    }
+}
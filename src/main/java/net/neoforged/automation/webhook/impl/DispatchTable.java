@@ -0,0 +1,77 @@
+package net.neoforged.automation.webhook.impl;
+
+import net.neoforged.automation.util.GHAction;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The handlers registered for an event, indexed by the action they handle.
+ * <p>
+ * The table is rebuilt on registration, so that dispatching an event is a single lookup. Handlers in each
+ * array keep their registration order.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+final class DispatchTable {
+    private static final EventHandler[] EMPTY = new EventHandler[0];
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private Map<String, EventHandler[]> byAction = Map.of();
+    private EventHandler[] anyAction = EMPTY;
+
+    void add(EventHandler<?> handler) {
+        if (handler instanceof ActionFilteredHandler<?> filtered) {
+            for (GHAction action : filtered.actions()) {
+                ActionBasedHandler actionHandler = filtered.handler();
+                entries.add(new Entry((gitHub, payload) -> actionHandler.handle(gitHub, payload, action), action));
+            }
+        } else {
+            entries.add(new Entry(handler, null));
+        }
+        rebuild();
+    }
+
+    /**
+     * {@return the handlers to invoke for an event with the given action}
+     */
+    EventHandler[] get(@Nullable String action) {
+        if (action != null) {
+            var handlers = byAction.get(action);
+            if (handlers != null) return handlers;
+        }
+        return anyAction;
+    }
+
+    private void rebuild() {
+        var actions = new LinkedHashMap<String, List<EventHandler>>();
+        var any = new ArrayList<EventHandler>();
+        for (var entry : entries) {
+            if (entry.action() != null) {
+                actions.computeIfAbsent(entry.action().wireName(), k -> new ArrayList<>());
+            }
+        }
+        for (var entry : entries) {
+            if (entry.action() == null) {
+                any.add(entry.handler());
+                actions.values().forEach(list -> list.add(entry.handler()));
+            } else {
+                actions.get(entry.action().wireName()).add(entry.handler());
+            }
+        }
+
+        var byAction = new HashMap<String, EventHandler[]>();
+        actions.forEach((action, handlers) -> byAction.put(action, handlers.toArray(EventHandler[]::new)));
+        this.byAction = byAction;
+        this.anyAction = any.toArray(EventHandler[]::new);
+    }
+
+    /**
+     * A registered handler, with the action it handles or {@code null} if it accepts any action.
+     */
+    private record Entry(EventHandler handler, @Nullable GHAction action) {}
+}
@@ -0,0 +1,100 @@
+package net.neoforged.automation.webhook.impl;
+
+import io.javalin.util.function.ThrowingRunnable;
+import net.neoforged.automation.service.MetricsService;
+import org.kohsuke.github.GHEventPayload;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches events onto lanes, each lane being drained by its own virtual thread.
+ * Events of the same lane are handled in the order they were submitted, while different lanes run in parallel.
+ * <p>
+ * Lanes are created on demand and discarded as soon as they become empty. All lane mutations happen inside
+ * {@link ConcurrentHashMap#compute} so that a lane is never drained by two threads at once.
+ */
+final class EventDispatcher {
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final MetricsService.Timer waitTime = MetricsService.timer("webhook_lane_wait_seconds", "Time events spend queued in their lane before being handled");
+
+    EventDispatcher() {
+        MetricsService.gauge("webhook_lanes_active", "Number of lanes with pending or running events", lanes::size);
+        MetricsService.gauge("webhook_lane_queued_events", "Number of events waiting in lanes", queued::get);
+        MetricsService.gauge("webhook_lane_max_depth", "Depth of the most backed up lane", () -> lanes.values().stream()
+                .mapToInt(l -> l.tasks.size())
+                .max().orElse(0));
+    }
+
+    CompletableFuture<Void> submit(String lane, ThrowingRunnable<Exception> action) {
+        var task = new Task(System.nanoTime(), action, new CompletableFuture<>());
+        var start = new boolean[1];
+        queued.incrementAndGet();
+        lanes.compute(lane, (key, existing) -> {
+            var l = existing == null ? new Lane() : existing;
+            l.tasks.add(task);
+            if (!l.running) {
+                l.running = true;
+                start[0] = true;
+            }
+            return l;
+        });
+        if (start[0]) {
+            Thread.ofVirtual().name("webhook-lane-" + lane).start(() -> drain(lane));
+        }
+        return task.future();
+    }
+
+    private void drain(String lane) {
+        var next = new Task[1];
+        while (true) {
+            lanes.computeIfPresent(lane, (key, l) -> {
+                next[0] = l.tasks.poll();
+                return next[0] == null ? null : l;
+            });
+            var task = next[0];
+            if (task == null) return;
+
+            queued.decrementAndGet();
+            waitTime.recordNanos(System.nanoTime() - task.submitted());
+            try {
+                task.action().run();
+                task.future().complete(null);
+            } catch (Throwable throwable) {
+                task.future().completeExceptionally(throwable);
+            }
+        }
+    }
+
+    /**
+     * {@return the lane events with the given payload are dispatched to}
+     * Events are sharded by repository and, if {@code perIssue} is set, by the issue or pull request they concern.
+     */
+    static String laneKey(GHEventPayload payload, boolean perIssue) {
+        var repo = payload.getRepository() == null ? "<none>" : payload.getRepository().getFullName();
+        if (perIssue) {
+            var number = switch (payload) {
+                case GHEventPayload.PullRequest pr -> pr.getNumber();
+                case GHEventPayload.Issue issue -> issue.getIssue().getNumber();
+                case GHEventPayload.IssueComment comment -> comment.getIssue().getNumber();
+                default -> -1;
+            };
+            if (number >= 0) {
+                return repo + "#" + number;
+            }
+        }
+        return repo;
+    }
+
+    private record Task(long submitted, ThrowingRunnable<Exception> action, CompletableFuture<Void> future) {}
+
+    private static final class Lane {
+        private final Queue<Task> tasks = new ArrayDeque<>();
+        private boolean running;
+    }
+}
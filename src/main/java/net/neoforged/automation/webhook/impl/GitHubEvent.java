@@ -1,5 +1,8 @@
 package net.neoforged.automation.webhook.impl;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jetbrains.annotations.Nullable;
 import org.kohsuke.github.GHEventPayload;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubAccessor;
@@ -13,6 +16,7 @@ public final class GitHubEvent<T extends GHEventPayload> {
 
     public static final GitHubEvent<GHEventPayload.Issue> ISSUES = create("issues", GHEventPayload.Issue.class);
     public static final GitHubEvent<GHEventPayload.PullRequest> PULL_REQUEST = create("pull_request", GHEventPayload.PullRequest.class);
+    public static final GitHubEvent<GHEventPayload.Label> LABEL = create("label", GHEventPayload.Label.class);
     public static final GitHubEvent<GHEventPayload.IssueComment> ISSUE_COMMENT = create("issue_comment", GHEventPayload.IssueComment.class);
     public static final GitHubEvent<GHEventPayload.Push> PUSH = create("push", GHEventPayload.Push.class);
     public static final GitHubEvent<GHEventPayload.Status> STATUS = create("status", GHEventPayload.Status.class);
@@ -27,6 +31,43 @@ public final class GitHubEvent<T extends GHEventPayload> {
         return GitHubAccessor.parseEventPayload(gitHub, content, type);
     }
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Stream through the payload, only reading its {@code action} and {@code repository.full_name}, without
+     * binding it to any object.
+     */
+    public static Summary summarize(byte[] content) throws IOException {
+        String action = null, repository = null;
+        try (var parser = JSON_FACTORY.createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new Summary(null, null);
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME && (action == null || repository == null)) {
+                var field = parser.currentName();
+                var token = parser.nextToken();
+                if (field.equals("action") && token == JsonToken.VALUE_STRING) {
+                    action = parser.getText();
+                } else if (field.equals("repository") && token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        var repoField = parser.currentName();
+                        if (parser.nextToken() == JsonToken.VALUE_STRING && repoField.equals("full_name")) {
+                            repository = parser.getText();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new Summary(action, repository);
+    }
+
+    public record Summary(@Nullable String action, @Nullable String repository) {}
+
     private static <T extends GHEventPayload> GitHubEvent<T> create(String name, Class<T> type) {
         var event = new GitHubEvent<>(type);
         BY_NAME.put(name, event);
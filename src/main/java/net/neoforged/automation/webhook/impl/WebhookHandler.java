@@ -12,6 +12,7 @@ import org.bouncycastle.crypto.io.MacInputStream;
 import org.bouncycastle.crypto.macs.HMac;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.kohsuke.github.GHEventPayload;
 import org.kohsuke.github.GitHub;
 import org.slf4j.Logger;
@@ -19,8 +20,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 // See https://docs.github.com/en/developers/webhooks-and-events/webhooks/webhook-events-and-payloads#webhook-payload-object-common-properties
 @SuppressWarnings({"rawtypes", "unchecked"})
@@ -33,28 +37,58 @@ public class WebhookHandler implements Handler {
     private final byte[] secretToken;
     private final GitHub gitHub;
 
-    private final Map<GitHubEvent, EventHandler[]> handlers = new IdentityHashMap<>();
+    private final Map<GitHubEvent, DispatchTable> handlers = new IdentityHashMap<>();
+
+    private final EventDispatcher dispatcher = new EventDispatcher();
+    private boolean lanePerIssue;
+
+    @Nullable
+    private WebhookQueue queue;
+    @Nullable
+    private DeliveryDeduplicator deduplicator;
 
     public WebhookHandler(String secretToken, GitHub gitHub) {
         this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
         this.gitHub = gitHub;
     }
 
+    /**
+     * Acknowledge deliveries as soon as they have been persisted to a durable queue, and handle them asynchronously.
+     * Deliveries left in the queue by a previous run are replayed immediately.
+     */
+    public WebhookHandler queued() {
+        this.queue = new WebhookQueue(this);
+        this.queue.start();
+        return this;
+    }
+
+    /**
+     * Dispatch events of different issues and pull requests of the same repository in parallel, instead of
+     * only ordering them per repository.
+     */
+    public WebhookHandler lanePerIssue() {
+        this.lanePerIssue = true;
+        return this;
+    }
+
+    /**
+     * Skip deliveries whose {@value #GITHUB_DELIVERY} was already received within the given {@code window}.
+     *
+     * @param maxSize    the maximum amount of delivery IDs to keep in memory
+     * @param persistent whether to also record delivery IDs in the database, to detect redeliveries across restarts
+     */
+    public WebhookHandler deduplicate(Duration window, int maxSize, boolean persistent) {
+        this.deduplicator = new DeliveryDeduplicator(window, maxSize, persistent);
+        return this;
+    }
+
     public WebhookHandler register(MultiEventHandler handler) {
         handler.register(this);
         return this;
     }
 
     public <T extends GHEventPayload> WebhookHandler registerHandler(GitHubEvent<T> event, EventHandler<T> handler) {
-        handlers.compute(event, (k, old) -> {
-            if (old != null) {
-                var newArray = new EventHandler[old.length + 1];
-                System.arraycopy(old, 0, newArray, 0, old.length);
-                newArray[old.length] = handler;
-                return newArray;
-            }
-            return new EventHandler[] {handler};
-        });
+        handlers.computeIfAbsent(event, k -> new DispatchTable()).add(handler);
         return this;
     }
 
@@ -84,17 +118,76 @@ public class WebhookHandler implements Handler {
         }
 
         var bodyBytes = validateSignatures(ctx);
+        var delivery = ctx.header(GITHUB_DELIVERY);
+        if (deduplicator != null && delivery != null && !deduplicator.markSeen(delivery)) {
+            ctx.status(HttpStatus.OK).result("Delivery " + delivery + " was already received");
+            return;
+        }
+
+        if (!accepts(handlers, bodyBytes)) {
+            ctx.status(HttpStatus.OK).result("No handlers interested in event");
+            return;
+        }
+
+        if (queue != null) {
+            queue.enqueue(delivery, event, bodyBytes);
+            ctx.status(HttpStatus.ACCEPTED).result("Queued");
+            return;
+        }
+
         try {
-            var payload = ev.parse(gitHub, bodyBytes);
-            if (Configuration.get(payload.getRepository()).enabled()) {
-                for (EventHandler handler : handlers) {
-                    handler.handle(gitHub, payload);
-                }
-            }
-        } catch (Exception exception) {
+            dispatch(ev, handlers, bodyBytes).join();
+        } catch (Exception ex) {
+            var exception = ex instanceof CompletionException ? ex.getCause() : ex;
             ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).result("Failed to handle request: " + exception.getMessage());
-            LOGGER.error("Failed to handle request {}: ", ctx.header(GITHUB_DELIVERY), exception);
+            LOGGER.error("Failed to handle request {}: ", delivery, exception);
+            failed(delivery);
+        }
+    }
+
+    /**
+     * Called when handling a delivery failed, so that it may be redelivered.
+     */
+    void failed(@Nullable String delivery) {
+        if (deduplicator != null && delivery != null) {
+            deduplicator.forget(delivery);
+        }
+    }
+
+    CompletableFuture<Void> dispatch(String event, byte[] body) throws Exception {
+        var ev = GitHubEvent.BY_NAME.get(event);
+        if (ev == null) return CompletableFuture.completedFuture(null);
+        var handlers = this.handlers.get(ev);
+        if (handlers == null) return CompletableFuture.completedFuture(null);
+        return dispatch(ev, handlers, body);
+    }
+
+    /**
+     * Check, without fully binding the payload, whether the repository it comes from is enabled and whether
+     * any handler is interested in its action.
+     */
+    private boolean accepts(DispatchTable handlers, byte[] body) throws IOException {
+        var summary = GitHubEvent.summarize(body);
+        if (summary.repository() != null && !Configuration.get(summary.repository()).enabled()) {
+            return false;
         }
+        return handlers.get(summary.action()).length > 0;
+    }
+
+    /**
+     * Parse the payload and queue the handlers of its action on the lane of the repository (or issue) it concerns.
+     */
+    private CompletableFuture<Void> dispatch(GitHubEvent ev, DispatchTable table, byte[] body) throws Exception {
+        var payload = ev.parse(gitHub, body);
+        var handlers = table.get(payload.getAction());
+        if (handlers.length == 0) return CompletableFuture.completedFuture(null);
+        return dispatcher.submit(EventDispatcher.laneKey(payload, lanePerIssue), () -> {
+            // Checked again when handling, as the event may have been queued or replayed before the repository was disabled
+            if (payload.getRepository() != null && !Configuration.get(payload.getRepository()).enabled()) return;
+            for (EventHandler handler : handlers) {
+                handler.handle(gitHub, payload);
+            }
+        });
     }
 
     private byte[] validateSignatures(Context exchange) throws IOException {
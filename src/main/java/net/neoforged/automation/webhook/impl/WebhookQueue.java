@@ -0,0 +1,65 @@
+package net.neoforged.automation.webhook.impl;
+
+import net.neoforged.automation.db.Database;
+import net.neoforged.automation.db.WebhookQueueDAO;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A durable queue of webhook deliveries, backed by the {@link Database}.
+ * <p>
+ * Deliveries are persisted before they are acknowledged and only removed once they have been handled,
+ * so deliveries that were still queued when the bot stopped are replayed on the next startup.
+ */
+final class WebhookQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebhookQueue.class);
+
+    private final WebhookHandler handler;
+    private final ExecutorService intake = Executors.newSingleThreadExecutor(Thread.ofVirtual()
+            .name("webhook-queue")
+            .factory());
+
+    WebhookQueue(WebhookHandler handler) {
+        this.handler = handler;
+    }
+
+    void start() {
+        var pending = Database.withExtension(WebhookQueueDAO.class, WebhookQueueDAO::pending);
+        if (!pending.isEmpty()) {
+            LOGGER.info("Replaying {} queued webhook deliveries", pending.size());
+        }
+        pending.forEach(this::submit);
+    }
+
+    void enqueue(@Nullable String delivery, String event, byte[] body) {
+        var id = Database.withExtension(WebhookQueueDAO.class, db -> db.enqueue(delivery, event, body));
+        submit(new WebhookQueueDAO.Delivery(id, delivery, event, body));
+    }
+
+    /**
+     * Deliveries are parsed in the order they were received by a single intake thread before being handed
+     * to the dispatcher, so that the per-lane ordering matches the order GitHub sent the events in.
+     */
+    private void submit(WebhookQueueDAO.Delivery delivery) {
+        intake.execute(() -> {
+            CompletableFuture<Void> handled;
+            try {
+                handled = handler.dispatch(delivery.event(), delivery.body());
+            } catch (Exception exception) {
+                handled = CompletableFuture.failedFuture(exception);
+            }
+            handled.whenComplete((result, exception) -> {
+                if (exception != null) {
+                    LOGGER.error("Failed to handle queued delivery {}: ", delivery.delivery(), exception);
+                    handler.failed(delivery.delivery());
+                }
+                Database.useExtension(WebhookQueueDAO.class, db -> db.remove(delivery.id()));
+            });
+        });
+    }
+}
@@ -58,7 +58,11 @@ public record BackportHandler(String version) implements LabelHandler {
 
                         message.append("<details>\n\n<summary>Click for failure reason</summary>\n\n");
 
-                        message.append(err).append("\n").append(runner.getRun(gitHub).getHtmlUrl()).append("\n\n</details>");
+                        message.append(err).append("\n");
+                        if (runner != null) {
+                            message.append(runner.getRun(gitHub).getHtmlUrl());
+                        }
+                        message.append("\n\n</details>");
 
                         pr.comment(message.toString());
                     } catch (Exception ex) {
@@ -9,9 +9,10 @@ import com.apollographql.apollo.api.json.BufferedSourceJsonReader;
 import com.apollographql.apollo.api.json.JsonReader;
 import com.apollographql.apollo.api.json.JsonWriter;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import net.neoforged.automation.util.AuthUtil;
-import net.neoforged.automation.util.Util;
 import okio.Buffer;
 import okio.Okio;
 import org.apache.commons.io.input.ReaderInputStream;
@@ -20,16 +21,17 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.kohsuke.github.function.InputStreamFunction;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
 
 public class GitHubAccessor {
+    private static final ObjectMapper GRAPHQL_MAPPER = new ObjectMapper();
 
     public static final CustomScalarAdapters ADAPTERS = new CustomScalarAdapters.Builder()
             .add(com.github.api.type.URI.type, new Adapter<URI>() {
@@ -79,6 +81,85 @@ public class GitHubAccessor {
         });
     }
 
+    /**
+     * Execute several operations of the same type in a single GraphQL request.
+     * <p>
+     * The root fields of each operation are aliased and its variables renamed with a {@code bN_} prefix, while
+     * the fragments are shared between all operations. The root fields of the operations may not be aliased.
+     *
+     * @return the data of each operation, in order
+     */
+    @NotNull
+    public static <T extends Operation.Data> List<T> graphQl(GitHub gitHub, List<? extends Operation<T>> calls) throws IOException {
+        if (calls.size() == 1) {
+            return List.of(graphQl(gitHub, calls.getFirst()));
+        }
+
+        final var definitions = new StringJoiner(", ");
+        final var selections = new StringBuilder();
+        final var variables = GRAPHQL_MAPPER.createObjectNode();
+        final List<List<String>> rootFields = new ArrayList<>(calls.size());
+        String fragments = "";
+
+        for (int i = 0; i < calls.size(); i++) {
+            final var prefix = "b" + i + "_";
+            final var request = composeRequest(calls.get(i));
+            final var document = GraphQlDocument.parse(request.get("query").asText());
+
+            final List<String> fields = new ArrayList<>();
+            selections.append(document.aliasRootFields(prefix, fields)).append('\n');
+            rootFields.add(fields);
+            if (!document.variableDefinitions().isBlank()) {
+                definitions.add(GraphQlDocument.renameVariables(document.variableDefinitions(), prefix));
+            }
+            if (request.get("variables") instanceof ObjectNode vars) {
+                vars.fields().forEachRemaining(e -> variables.set(prefix + e.getKey(), e.getValue()));
+            }
+            fragments = document.fragments();
+        }
+
+        final var body = GRAPHQL_MAPPER.createObjectNode();
+        body.put("query", "query Batch" + (definitions.length() == 0 ? "" : "(" + definitions + ")") + " {\n" + selections + "}\n" + fragments);
+        body.set("variables", variables);
+
+        final JsonNode response = gitHub.createRequest()
+                .method("POST")
+                .inBody()
+                .with(new ByteArrayInputStream(GRAPHQL_MAPPER.writeValueAsBytes(body)))
+                .withUrlPath("/graphql")
+                .fetchStream(GRAPHQL_MAPPER::readTree);
+
+        final var data = response.get("data");
+        if (data == null || data.isNull()) {
+            throw new IOException("Batched GraphQL request failed: " + response.get("errors"));
+        }
+
+        final List<T> results = new ArrayList<>(calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            final var wrapper = GRAPHQL_MAPPER.createObjectNode();
+            final var opData = wrapper.putObject("data");
+            for (String field : rootFields.get(i)) {
+                opData.set(field, data.get("b" + i + "_" + field));
+            }
+            final var reader = new BufferedSourceJsonReader(new Buffer().write(GRAPHQL_MAPPER.writeValueAsBytes(wrapper)));
+            results.add(Operations.parseResponse(calls.get(i), reader, null, ADAPTERS).data);
+        }
+        return results;
+    }
+
+    /**
+     * {@return an estimate of the number of nodes the given operation requests, as counted by GitHub towards its limits}
+     */
+    public static long estimateNodes(Operation<?> call) {
+        return GraphQlDocument.estimateNodes(call.document());
+    }
+
+    private static ObjectNode composeRequest(Operation<?> call) throws IOException {
+        var buf = new Buffer();
+        Operations.composeJsonRequest(call, new BufferedSinkJsonWriter(buf), ADAPTERS);
+        return (ObjectNode) GRAPHQL_MAPPER.readTree(buf.readUtf8());
+    }
+
     public static void lock(GHIssue issue, @Nullable LockReason reason) throws IOException {
         if (reason == null) {
             issue.lock();
@@ -148,15 +229,6 @@ public class GitHubAccessor {
         return t;
     }
 
-    private static final Map<GHRepository, Set<String>> EXISTING_LABELS = new ConcurrentHashMap<>();
-    public static Set<String> getExistingLabels(GHRepository repository) throws IOException {
-        Set<String> ex = EXISTING_LABELS.get(repository);
-        if (ex != null) return ex;
-        ex = repository.listLabels().toList().stream().map(GHLabel::getName).collect(Collectors.toSet());
-        EXISTING_LABELS.put(repository, ex);
-        return ex;
-    }
-
     public static GHApp getApp(GitHub owner) throws IOException {
         try {
             var field = GitHubClient.class.getDeclaredField("authorizationProvider");
@@ -167,24 +239,13 @@ public class GitHubAccessor {
         }
     }
 
-    @Nullable
-    public static GHLabel getLabel(GHRepository repo, String name) {
-        try {
-            return repo.getLabel(name);
-        } catch (Exception ex) {
-            return null;
-        }
-    }
-
-    public static String readDiff(GHPullRequest pr) {
-        try {
-            return pr.root().createRequest()
-                    .withAccept("application/vnd.github.diff")
-                    .withUrlPath(pr.getApiRoute())
-                    .fetchStream(s -> new String(s.readAllBytes(), StandardCharsets.UTF_8));
-        } catch (Exception ex) {
-            Util.sneakyThrow(ex);
-            return "";
-        }
+    /**
+     * Stream the diff of the given PR, without reading it into memory.
+     */
+    public static <T> T readDiff(GHPullRequest pr, InputStreamFunction<T> reader) throws IOException {
+        return pr.root().createRequest()
+                .withAccept("application/vnd.github.diff")
+                .withUrlPath(pr.getApiRoute())
+                .fetchStream(reader);
     }
 }
@@ -0,0 +1,171 @@
+package org.kohsuke.github;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal split of a single-operation GraphQL document, as generated by Apollo, used to merge several operations
+ * into one document.
+ *
+ * @param variableDefinitions the variable definitions of the operation, without the enclosing parentheses
+ * @param selection           the root selection set of the operation, without the enclosing braces
+ * @param fragments           the fragment definitions following the operation
+ */
+record GraphQlDocument(String variableDefinitions, String selection, String fragments) {
+    private static final Pattern VARIABLE = Pattern.compile("\\$(\\w+)");
+    private static final Pattern FRAGMENT = Pattern.compile("fragment\\s+(\\w+)\\s+on\\s+\\w+\\s*\\{");
+    private static final Pattern PAGE_SIZE = Pattern.compile("\\b(?:first|last)\\s*:\\s*(\\d+)");
+
+    static GraphQlDocument parse(String document) {
+        var paren = document.indexOf('(');
+        var selectionStart = document.indexOf('{');
+        var definitions = "";
+        if (paren >= 0 && paren < selectionStart) {
+            var parenEnd = close(document, paren);
+            definitions = document.substring(paren + 1, parenEnd);
+            selectionStart = document.indexOf('{', parenEnd);
+        }
+        var selectionEnd = close(document, selectionStart);
+        return new GraphQlDocument(definitions.trim(), document.substring(selectionStart + 1, selectionEnd), document.substring(selectionEnd + 1).trim());
+    }
+
+    /**
+     * Alias every root field of the selection as {@code <prefix><field>} and rename the variables it references.
+     *
+     * @param fieldNames a list the original names of the root fields are added to
+     */
+    String aliasRootFields(String prefix, List<String> fieldNames) {
+        var out = new StringBuilder();
+        int i = 0;
+        while (i < selection.length()) {
+            char c = selection.charAt(i);
+            if (c == '(' || c == '{') {
+                int end = close(selection, i);
+                out.append(selection, i, end + 1);
+                i = end + 1;
+            } else if (Character.isLetter(c) || c == '_') {
+                int end = identifierEnd(selection, i);
+                var name = selection.substring(i, end);
+                fieldNames.add(name);
+                out.append(prefix).append(name).append(": ").append(name);
+                i = end;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return renameVariables(out.toString(), prefix);
+    }
+
+    /**
+     * Estimate the number of nodes GitHub counts towards its limits for the given document.
+     * Like GitHub, this multiplies the page sizes of nested connections, with fragments expanded in place.
+     */
+    static long estimateNodes(String document) {
+        var parsed = parse(document);
+        var fragments = new HashMap<String, String>();
+        var matcher = FRAGMENT.matcher(parsed.fragments());
+        while (matcher.find()) {
+            var open = matcher.end() - 1;
+            var end = close(parsed.fragments(), open);
+            fragments.put(matcher.group(1), parsed.fragments().substring(open + 1, end));
+            matcher.region(end + 1, parsed.fragments().length());
+        }
+        return countNodes(parsed.selection(), 1, fragments, 0);
+    }
+
+    private static long countNodes(String selection, long multiplier, Map<String, String> fragments, int depth) {
+        if (depth > 32) {
+            throw new IllegalArgumentException("GraphQL document nests too deep, or has recursive fragments");
+        }
+
+        long nodes = 0;
+        long pageSize = 0;
+        int i = 0;
+        while (i < selection.length()) {
+            char c = selection.charAt(i);
+            if (c == '(') {
+                int end = close(selection, i);
+                var matcher = PAGE_SIZE.matcher(selection.substring(i, end));
+                if (matcher.find()) {
+                    pageSize = Long.parseLong(matcher.group(1));
+                }
+                i = end + 1;
+            } else if (c == '{') {
+                int end = close(selection, i);
+                var inner = multiplier * Math.max(pageSize, 1);
+                if (pageSize > 0) {
+                    nodes += inner;
+                }
+                nodes += countNodes(selection.substring(i + 1, end), inner, fragments, depth + 1);
+                pageSize = 0;
+                i = end + 1;
+            } else if (selection.startsWith("...", i)) {
+                i = skipWhitespace(selection, i + 3);
+                int end = identifierEnd(selection, i);
+                var name = selection.substring(i, end);
+                if (!name.equals("on") && fragments.containsKey(name)) {
+                    nodes += countNodes(fragments.get(name), multiplier, fragments, depth + 1);
+                }
+                i = end;
+            } else if (c == '@') {
+                i = identifierEnd(selection, i + 1);
+            } else if (Character.isLetter(c) || c == '_') {
+                // A new field starts, which is only a connection if it has a page size argument
+                pageSize = 0;
+                i = identifierEnd(selection, i);
+            } else {
+                i++;
+            }
+        }
+        return nodes;
+    }
+
+    private static int skipWhitespace(String text, int index) {
+        while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int identifierEnd(String text, int index) {
+        while (index < text.length() && (Character.isLetterOrDigit(text.charAt(index)) || text.charAt(index) == '_')) {
+            index++;
+        }
+        return index;
+    }
+
+    static String renameVariables(String text, String prefix) {
+        return VARIABLE.matcher(text).replaceAll("\\$" + prefix + "$1");
+    }
+
+    /**
+     * {@return the index of the bracket closing the one at {@code open}}
+     * String literals are skipped.
+     */
+    private static int close(String text, int open) {
+        var opening = text.charAt(open);
+        var closing = opening == '(' ? ')' : '}';
+        int depth = 0;
+        boolean inString = false;
+        for (int i = open; i < text.length(); i++) {
+            var c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == opening) {
+                depth++;
+            } else if (c == closing && --depth == 0) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unbalanced GraphQL document: " + text);
+    }
+}
@@ -0,0 +1,7 @@
+create table webhook_queue
+(
+    id       integer not null primary key autoincrement,
+    delivery text,
+    event    text    not null,
+    body     blob    not null
+);
@@ -0,0 +1,5 @@
+create table webhook_deliveries
+(
+    delivery    text    not null primary key,
+    received_at integer not null
+) without rowid;